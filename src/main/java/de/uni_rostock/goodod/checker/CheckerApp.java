@@ -27,19 +27,16 @@ import java.util.Set;
 import org.apache.commons.logging.Log; 
 import org.apache.commons.logging.LogFactory; 
 
+import de.uni_rostock.goodod.owl.ReasonerProvider;
 import de.uni_rostock.goodod.owl.SubClassCollector;
 import de.uni_rostock.goodod.owl.normalization.BasicImportingNormalizerFactory;
 import de.uni_rostock.goodod.tools.Configuration;
 
-import org.semanticweb.HermiT.Reasoner;
-import org.semanticweb.HermiT.Configuration.ExistentialStrategyType;
-import org.semanticweb.HermiT.Configuration.TableauMonitorType;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.io.FileDocumentSource;
 import org.semanticweb.owlapi.model.*;
-//import org.semanticweb.owlapi.reasoner.ConsoleProgressMonitor;
-
-//import org.semanticweb.owlapi.reasoner.ReasonerProgressMonitor;
+import org.semanticweb.owlapi.reasoner.InferenceType;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
 import org.semanticweb.owlapi.util.SimpleIRIMapper;
 
 
@@ -85,15 +82,18 @@ public class CheckerApp
 			System.exit(1);
 		}
 		
-		org.semanticweb.HermiT.Configuration reasonerConfig = new org.semanticweb.HermiT.Configuration();
-		reasonerConfig.throwInconsistentOntologyException = false;
-		//ReasonerProgressMonitor monitor = new ConsoleProgressMonitor();
-		reasonerConfig.existentialStrategyType = ExistentialStrategyType.INDIVIDUAL_REUSE;
-		//reasonerConfig.reasonerProgressMonitor = monitor;
-		reasonerConfig.tableauMonitorType = TableauMonitorType.NONE;
-		//reasonerConfig.individualTaskTimeout = 10000;
-		Reasoner reasoner = new Reasoner(reasonerConfig, ontology);
-		reasoner.classifyClasses();
+		ReasonerProvider provider = null;
+		try
+		{
+			provider = ReasonerProvider.forName(config.getString("reasoner"), (1000 * config.getLong("reasonerTimeout", 0)));
+		}
+		catch (IllegalArgumentException e)
+		{
+			logger.fatal("Could not set up reasoner", e);
+			System.exit(1);
+		}
+		OWLReasoner reasoner = provider.createReasoner(ontology);
+		classify(provider, reasoner, testFile);
 		Set<OWLClass> before = reasoner.getUnsatisfiableClasses().getEntitiesMinus(manager.getOWLDataFactory().getOWLNothing());
 		//logger.info("Found " + before.size() + " inconsistent classes before import change.");
 		logger.debug(before);
@@ -128,8 +128,8 @@ public class CheckerApp
 		
 		n.normalize(ontology);
 		
-		reasoner = new Reasoner(reasonerConfig, ontology);
-		reasoner.classifyClasses();
+		reasoner = provider.createReasoner(ontology);
+		classify(provider, reasoner, testFile);
 		Set<OWLClass> after = reasoner.getUnsatisfiableClasses().getEntitiesMinus(manager.getOWLDataFactory().getOWLNothing());
 		
 		//logger.info("Found " + after.size() + " inconsistent classes after import change.");
@@ -163,4 +163,17 @@ public class CheckerApp
 			logger.warn(testFile + ": Import change is not neutral to inconsistencies (" + before.size() + '/' + after.size() + ")");
 		}
     }
+
+	private static void classify(ReasonerProvider provider, OWLReasoner reasoner, String testFile)
+	{
+		try
+		{
+			provider.precomputeInferences(reasoner, InferenceType.CLASS_HIERARCHY);
+		}
+		catch (OWLRuntimeException e)
+		{
+			logger.fatal(testFile + ": Classification failed", e);
+			System.exit(1);
+		}
+	}
 }
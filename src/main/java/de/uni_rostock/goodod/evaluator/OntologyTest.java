@@ -24,15 +24,19 @@ import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.HierarchicalConfiguration;
@@ -49,9 +53,13 @@ import org.semanticweb.owlapi.util.SimpleIRIMapper;
 import de.uni_rostock.goodod.owl.*;
 import de.uni_rostock.goodod.owl.comparison.Comparator;
 import de.uni_rostock.goodod.owl.comparison.ComparisonResult;
+import de.uni_rostock.goodod.owl.comparison.CosineVMComparator;
 import de.uni_rostock.goodod.owl.comparison.FMeasureComparisonResult;
+import de.uni_rostock.goodod.owl.comparison.SCComparator;
+import de.uni_rostock.goodod.owl.comparison.SymmetricComparator;
 import de.uni_rostock.goodod.owl.normalization.NormalizerChainFactory;
 import de.uni_rostock.goodod.tools.Configuration;
+import de.uni_rostock.goodod.tools.Throttle;
 
 /**
  * This class encapsulates a single ontology test.
@@ -76,7 +84,11 @@ public class OntologyTest {
 	private Map<URI,Map<URI,ComparisonResult>> resultMap;
 	private boolean considerImports;
 	private static Log logger = LogFactory.getLog(OntologyTest.class);
-	private AtomicInteger inProgressCount;
+	private final Throttle comparisonThrottle;
+	private PairScheduler scheduler;
+	private OntologyCache cache;
+	private ExecutorService executor;
+	private volatile boolean cancelled;
 	public OntologyTest(HierarchicalConfiguration testDescription) throws FileNotFoundException, IOException, OWLOntologyCreationException, ConfigurationException
 	{
 		
@@ -84,8 +96,10 @@ public class OntologyTest {
 		globalConfig = Configuration.getConfiguration();
 		threadCount = globalConfig.getInt("threadCount");
 		compCtor = getComparatorConstructor(globalConfig.getString("similarity"));
+		setupReasoner();
 		testConfig = testDescription;
-		inProgressCount = new AtomicInteger();
+		// Allow one comparison to queue up behind each worker thread.
+		comparisonThrottle = new Throttle("Comparisons", (threadCount + 1));
 		
 		// Gather URIs for the raw, model and student ontologies.
 		String repoRoot = globalConfig.getString("repositoryRoot");
@@ -173,20 +187,72 @@ public class OntologyTest {
 
 		
     	
-		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		executor = Executors.newFixedThreadPool(threadCount);
+		// Lets comparisons with few pairs but many classes use all threads.
+		SCComparator.setWorkerCount(threadCount);
     	Set<URI> fromOntologies = new HashSet<URI>(25);
     	Set<URI> toOntologies = new HashSet<URI>(25);
     	Set<? extends OWLOntologyIRIMapper> bioTopLiteMapper = null;
+    	IRI bioTopLiteIRI = IRI.create("http://purl.org/biotop/biotoplite.owl");
     	if (null != bioTopLiteURI)
     	{
-    		bioTopLiteMapper = Collections.singleton(new SimpleIRIMapper(IRI.create("http://purl.org/biotop/biotoplite.owl"),IRI.create(bioTopLiteURI)));
+    		bioTopLiteMapper = Collections.singleton(new SimpleIRIMapper(bioTopLiteIRI,IRI.create(bioTopLiteURI)));
+    	}
+    	cache = OntologyCache.setupSharedCache(bioTopLiteMapper, getIgnoredImports(), threadCount);
+    	if (null != bioTopLiteURI)
+    	{
+    		/*
+    		 * Every student ontology imports BioTopLite, so we load it only
+    		 * once and share it between all of them.
+    		 */
+    		SharedImportLayer layer = new SharedImportLayer(cache.getOntologyLoaderConfiguration());
+    		try
+    		{
+    			layer.preload(bioTopLiteIRI, IRI.create(bioTopLiteURI));
+    			cache.setSharedImportLayer(layer);
+    		}
+    		catch (OWLOntologyCreationException e)
+    		{
+    			logger.warn("Could not preload BioTopLite, every ontology will load its own copy.", e);
+    		}
     	}
-    	OntologyCache cache = OntologyCache.setupSharedCache(bioTopLiteMapper, getIgnoredImports(), threadCount);
     	NormalizerChainFactory chain =  new NormalizerChainFactory();/* new NormalizerChainFactory(importer, intersector, namer, decomposer, subsumer);*/
 		cache.setNormalizerFactory(chain);
+		cache.setMaximumWeight(globalConfig.getLong("cacheWeight", 0));
+		int cotopyCount = globalConfig.getInt("cotopyCacheSize", 0);
+		if (0 < cotopyCount)
+		{
+			cache.getCotopyCache().setMaximumSize(cotopyCount);
+		}
+		String storeDir = globalConfig.getString("normalizedOntologyCache");
+		if (null != storeDir)
+		{
+			try
+			{
+				cache.setNormalizedOntologyStore(new NormalizedOntologyStore(new File(storeDir),
+				  getNormalizationFingerprint(),
+				  ClassExpressionNameProvider.getSharedProvider()));
+			}
+			catch (IOException e)
+			{
+				logger.warn("Could not use normalized ontology cache.", e);
+			}
+		}
+		String classificationDir = globalConfig.getString("classificationCache");
+		if (null != classificationDir)
+		{
+			try
+			{
+				cache.setClassificationStore(new ClassificationStore(new File(classificationDir)));
+			}
+			catch (IOException e)
+			{
+				logger.warn("Could not use classification cache.", e);
+			}
+		}
 		
     	fromOntologies.addAll(groupAOntologies);
-    	
+    	boolean symmetric = false;
     	if (globalConfig.getBoolean("one-way", false))
     	{
     		/*
@@ -207,69 +273,96 @@ public class OntologyTest {
     		
     		fromOntologies.addAll(groupBOntologies);
     		toOntologies = fromOntologies;
+    		/*
+    		 * Every pair appears in both directions, so comparators that can
+    		 * do it handle both at once.
+    		 */
+    		symmetric = (SymmetricComparator.class.isAssignableFrom(compCtor.getDeclaringClass())
+    		  && globalConfig.getBoolean("symmetricComparisons", true));
     	}
     	
     	if (null != modelOntology)
     	{
     		toOntologies.add(modelOntology);
     	}
+    	if (CosineVMComparator.class.isAssignableFrom(compCtor.getDeclaringClass())
+    	  && CosineVMComparator.needsCompleteCorpus())
+    	{
+    		Set<URI> corpus = new HashSet<URI>(fromOntologies);
+    		corpus.addAll(toOntologies);
+    		buildTermVectorSpace(corpus);
+    	}
     	logger.info("Running comparisons for test '" + getTestName() +"'.");
-    	
-    	for (URI u1 : fromOntologies)
+    	scheduler = new PairScheduler(fromOntologies, toOntologies, getTileSize(fromOntologies), symmetric);
+    	for (URI[] thePair : scheduler.getPairs())
     	{
-    		for (URI u2 : toOntologies)
+    		URI u1 = thePair[0];
+    		URI u2 = thePair[1];
+    		/*
+    		 *  Working with the ontologies is resource intensive. We want
+    		 *  to handle more than one at a time, especially on multicore
+    		 *  machines, but neigher starving ourselves from I/O nor
+    		 *  generating massive cache or memory churn is very smart.
+    		 *  So we block until one of the running comparisons is done.
+    		 */
+    		try
     		{
-    			if (u1.equals(u2))
-    			{
-    				continue;
-    			}
-    			/*
-    			 *  Working with the ontologies is resource intensive. We want
-    			 *  to handle more than one at a time, especially on multicore
-    			 *  machines, but neigher starving ourselves from I/O nor
-    			 *  generating massive cache or memory churn is very smart.
-    			 */
-    			int waitCount = 0;
-    			while (inProgressCount.get() > threadCount)
-    			{
-    				if (0 == ++waitCount % 8 )
-    				{
-    					
-    					/* 
-    					 * Thight loop a few times, then yield in order to let
-    					 * the other threads finish.
-    					 */
-    					Thread.yield();
-    				}
-    			}
     			comparisonStarted();
-    			try
-    			{
-    				OntologyPair p = new OntologyPair(cache, u1, u2);
-    				executor.execute(new ComparisonRunner(u1, u2, p));
-    			}
-    			catch (Throwable e)
+    		}
+    		catch (InterruptedException e)
+    		{
+    			cancel();
+    			throw e;
+    		}
+    		if (cancelled)
+    		{
+    			comparisonDone();
+    			break;
+    		}
+    		try
+    		{
+    			OntologyPair p = new OntologyPair(cache, u1, u2);
+    			executor.execute(new ComparisonRunner(u1, u2, p, scheduler.isSymmetric(u1, u2)));
+    		}
+    		catch (Throwable e)
+    		{
+    			logger.warn("Could not compare " + u1.toString() + " and " + u2.toString()+ ".", e);
+    			comparisonFailed(u1, u2);
+    			if (scheduler.isSymmetric(u1, u2))
     			{
-    				logger.warn("Could not compare " + u1.toString() + " and " + u2.toString()+ ".", e);
-    				Set<URI>values = failedComparisons.get(u1);
-    				if (null != values)
-    				{
-    					values.add(u2);
-    				}
-    				else
-    				{
-    					values = new HashSet<URI>();
-    					values.add(u2);
-    					failedComparisons.put(u2, values);
-    				}
+    				comparisonFailed(u2, u1);
     			}
+    			comparisonDone();
+    			pairFinished(u1, u2);
     		}
- 
     	}
     	executor.shutdown();
-    	while (false == executor.isTerminated()) {
-    			// wait until we're done.
-		}
+    	try
+    	{
+    		while (false == executor.awaitTermination(1, TimeUnit.MINUTES))
+    		{
+    			logger.info(comparisonThrottle.toString());
+    		}
+    	}
+    	catch (InterruptedException e)
+    	{
+    		cancel();
+    		throw e;
+    	}
+    	finally
+    	{
+    		logger.info(comparisonThrottle.toString());
+    		logger.info(ReasonerProvider.getSharedProvider().toString());
+    		logger.info(ClassExpressionNameProvider.getSharedProvider().toString());
+    	}
+    	if (cancelled)
+    	{
+    		logger.info("Comparisons on '" + getTestName() + "' cancelled.");
+    		cache.teardown();
+    		cache = null;
+    		scheduler = null;
+    		return;
+    	}
     	logger.info("Comparisons on '" + getTestName() + "' completed.");
     	if (logger.isDebugEnabled())
     	{
@@ -277,6 +370,177 @@ public class OntologyTest {
     	}
     	cache.teardown();
     	cache = null;
+    	scheduler = null;
+	}
+	
+	/**
+	 * Cancels a running test. Comparisons that have not been started yet are
+	 * skipped, running comparisons and ontology loads are interrupted.
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+		// Interrupt the reasoners first, they don't react to thread interrupts.
+		ReasonerProvider.getSharedProvider().cancelAll();
+		ExecutorService theExecutor = executor;
+		if (null != theExecutor)
+		{
+			theExecutor.shutdownNow();
+		}
+		OntologyCache theCache = cache;
+		if (null != theCache)
+		{
+			theCache.flushCache();
+		}
+	}
+	
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+	
+	/**
+	 * Determines how many ontologies the scheduler may use in one tile of
+	 * the comparison matrix. This is either configured explicitly or
+	 * estimated from the weight of an ontology and the bound of the cache.
+	 */
+	private int getTileSize(Set<URI> ontologies)
+	{
+		int tileSize = globalConfig.getInt("tileSize", 0);
+		if (0 < tileSize)
+		{
+			return tileSize;
+		}
+		long maxWeight = cache.getMaximumWeight();
+		if ((0 >= maxWeight) || ontologies.isEmpty())
+		{
+			// Everything fits.
+			return Integer.MAX_VALUE;
+		}
+		try
+		{
+			// We'll need this one first anyways, so we can just as well use it as a sample.
+			cache.getOntologySynchronouslyAtURI(Collections.min(ontologies));
+		}
+		catch (OWLOntologyCreationException e)
+		{
+			logger.warn("Could not load sample ontology.", e);
+		}
+		long averageWeight = cache.getAverageWeight();
+		if (0 == averageWeight)
+		{
+			return (2 * threadCount);
+		}
+		return (int)Math.max(2, Math.min(Integer.MAX_VALUE, (maxWeight / averageWeight)));
+	}
+	
+	/**
+	 * Adds the term vectors of all ontologies to the corpus before the first
+	 * comparison, so that the document frequencies are the same for every
+	 * pair. If the cache is bounded, the ontologies are released again and
+	 * will be reloaded when the scheduler gets to them.
+	 */
+	private void buildTermVectorSpace(Set<URI> ontologies) throws InterruptedException
+	{
+		logger.info("Building term vectors for " + ontologies.size() + " ontologies.");
+		final TermVectorSpace space = cache.getTermVectorSpace(considerImports);
+		final boolean release = (0 < cache.getMaximumWeight());
+		List<Future<?>> pending = new ArrayList<Future<?>>(ontologies.size());
+		for (final URI u : ontologies)
+		{
+			pending.add(executor.submit(new Runnable()
+			{
+				public void run()
+				{
+					try
+					{
+						space.getTermVector(cache.getOntologyAtURI(u).get());
+					}
+					catch (Throwable e)
+					{
+						logger.warn("Could not build term vector for " + u.toString() + ".", e);
+					}
+					finally
+					{
+						if (release)
+						{
+							cache.removeOntologyAtURI(u);
+						}
+					}
+				}
+			}));
+		}
+		for (Future<?> f : pending)
+		{
+			try
+			{
+				f.get();
+			}
+			catch (ExecutionException e)
+			{
+				// Already logged by the task.
+			}
+		}
+		logger.info("Term vectors use " + space.getTermCount() + " distinct terms.");
+	}
+	
+	private synchronized void comparisonFailed(URI u1, URI u2)
+	{
+		Set<URI>values = failedComparisons.get(u1);
+		if (null != values)
+		{
+			values.add(u2);
+		}
+		else
+		{
+			values = new HashSet<URI>();
+			values.add(u2);
+			failedComparisons.put(u1, values);
+		}
+	}
+	
+	/**
+	 * Called when a comparison has been processed (whether successfully or
+	 * not). Releases the ontologies that are no longer needed from the cache.
+	 */
+	private void pairFinished(URI u1, URI u2)
+	{
+		for (URI u : scheduler.pairDone(u1, u2))
+		{
+			cache.removeOntologyAtURI(u);
+		}
+	}
+	
+	/**
+	 * Produces a description of everything besides the ontology itself that
+	 * influences the outcome of normalization. Stored normalized ontologies
+	 * are only reused if this doesn't change.
+	 */
+	private String getNormalizationFingerprint() throws IOException
+	{
+		StringBuilder builder = new StringBuilder();
+		SubnodeConfiguration normalizerConfig = globalConfig.configurationAt("normalizers");
+		@SuppressWarnings("unchecked")
+		Iterator<String> iter = normalizerConfig.getKeys();
+		List<String> keys = new ArrayList<String>();
+		while (iter.hasNext())
+		{
+			keys.add(iter.next());
+		}
+		Collections.sort(keys);
+		for (String key : keys)
+		{
+			builder.append(key + '=' + Arrays.toString(normalizerConfig.getStringArray(key)) + '\n');
+		}
+		List<String> ignored = new ArrayList<String>(Arrays.asList(globalConfig.getStringArray("ignoredImports")));
+		Collections.sort(ignored);
+		builder.append("ignoredImports=" + ignored + '\n');
+		builder.append("reasoner=" + ReasonerProvider.getSharedProvider().getFingerprint() + '\n');
+		if (null != bioTopLiteURI)
+		{
+			builder.append("bioTopLite=" + NormalizedOntologyStore.digestForFile(new File(bioTopLiteURI)) + '\n');
+		}
+		return builder.toString();
 	}
 	
 	private void writeNormalizedOntologiesTo(Set<URI>URIs, OntologyCache cache, File directory)
@@ -313,12 +577,14 @@ public class OntologyTest {
 		private URI o1;
 		private URI o2;
 		private OntologyPair pair;
+		private boolean bothWays;
 		
-		ComparisonRunner(URI ont1, URI ont2, OntologyPair thePair)
+		ComparisonRunner(URI ont1, URI ont2, OntologyPair thePair, boolean doBothWays)
 		{
 			o1 = ont1;
 			o2 = ont2;
 			pair = thePair;
+			bothWays = doBothWays;
 		}
 	
 		public void run()
@@ -326,9 +592,24 @@ public class OntologyTest {
 			
     		Comparator comp = getComparator(pair, considerImports);
     		ComparisonResult res = null;
+    		ComparisonResult inverseRes = null;
     		try
     		{
-    			if (null == testIRIs)
+    			if (bothWays)
+    			{
+    				ComparisonResult[] results;
+    				if (null == testIRIs)
+    				{
+    					results = ((SymmetricComparator)comp).compareBothWays();
+    				}
+    				else
+    				{
+    					results = ((SymmetricComparator)comp).compareBothWays(testIRIs);
+    				}
+    				res = results[0];
+    				inverseRes = results[1];
+    			}
+    			else if (null == testIRIs)
     			{
     				res = comp.compare();
     			}
@@ -339,27 +620,41 @@ public class OntologyTest {
     		}
     		catch (Throwable e)
     		{
+    			/*
+    			 * This includes ontologies that could not be normalized
+    			 * because the reasoner timed out or was cancelled.
+    			 */
     			logger.warn("Problem in comparison", e);
+    			comparisonFailed(o1, o2);
+    			if (bothWays)
+    			{
+    				comparisonFailed(o2, o1);
+    			}
     			return;
     		}
     		finally
     		{
         		pair = null;
     			comparisonDone();
+    			pairFinished(o1, o2);
     		}
     		pushResult(o1, o2, res);
+    		if (null != inverseRes)
+    		{
+    			pushResult(o2, o1, inverseRes);
+    		}
 		}
 	}
 	
 	
-	private synchronized void comparisonStarted()
+	private void comparisonStarted() throws InterruptedException
 	{
-		inProgressCount.incrementAndGet();
+		comparisonThrottle.acquire();
 	}
 	
-	private synchronized void comparisonDone()
+	private void comparisonDone()
 	{
-		inProgressCount.decrementAndGet();
+		comparisonThrottle.release();
 	}
 	
 	private synchronized void pushResult(URI o1, URI o2, ComparisonResult res)
@@ -517,6 +812,24 @@ public class OntologyTest {
 		return ctor;
 	}
 	
+	/**
+	 * Sets up the reasoner used for normalization according to the
+	 * 'reasoner' and 'reasonerTimeout' keys of the configuration.
+	 */
+	private void setupReasoner()
+	{
+		try
+		{
+			ReasonerProvider.setSharedProvider(ReasonerProvider.forName(globalConfig.getString("reasoner"),
+			  (1000 * globalConfig.getLong("reasonerTimeout", 0))));
+		}
+		catch (IllegalArgumentException e)
+		{
+			logger.fatal("Could not set up reasoner", e);
+			System.exit(1);
+		}
+	}
+	
 	private Comparator getComparator(OntologyPair pair, boolean includeImports)
 	{
 		try
@@ -0,0 +1,199 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 07.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.evaluator;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Determines the order in which the pairs of the comparison matrix are
+ * processed. The matrix is split into tiles that touch no more ontologies
+ * than fit into the ontology cache, and the tiles are visited so that
+ * consecutive tiles share ontologies. The scheduler also keeps track of how
+ * often each ontology is still needed, so that it can be released as soon as
+ * its last comparison is done.
+ *
+ * In symmetric mode, a pair whose inverse is also part of the matrix is only
+ * scheduled once, with the lesser URI first, and the caller is expected to
+ * compute both directions from it.
+ *
+ * @author Niels Grewe
+ *
+ */
+public class PairScheduler {
+
+	private final List<URI[]> pairs;
+	private final Map<URI,Integer> pendingUses;
+	private final Set<URI> rowSet;
+	private final Set<URI> columnSet;
+	private final boolean symmetric;
+
+	/**
+	 *
+	 * @param fromOntologies The ontologies for the rows of the matrix.
+	 * @param toOntologies The ontologies for the columns of the matrix.
+	 * @param tileSize The number of ontologies that can be kept in memory at
+	 * the same time.
+	 */
+	public PairScheduler(Collection<URI> fromOntologies, Collection<URI> toOntologies, int tileSize)
+	{
+		this(fromOntologies, toOntologies, tileSize, false);
+	}
+
+	/**
+	 *
+	 * @param fromOntologies The ontologies for the rows of the matrix.
+	 * @param toOntologies The ontologies for the columns of the matrix.
+	 * @param tileSize The number of ontologies that can be kept in memory at
+	 * the same time.
+	 * @param isSymmetric Whether to schedule pairs that appear in both
+	 * directions only once.
+	 */
+	public PairScheduler(Collection<URI> fromOntologies, Collection<URI> toOntologies, int tileSize, boolean isSymmetric)
+	{
+		List<URI> rows = sortedList(fromOntologies);
+		List<URI> columns = sortedList(toOntologies);
+		rowSet = new HashSet<URI>(rows);
+		columnSet = new HashSet<URI>(columns);
+		symmetric = isSymmetric;
+		/*
+		 * A tile covers half of its ontologies from the rows and half from the
+		 * columns.
+		 */
+		int side = Math.max(1, (tileSize / 2));
+		pairs = new ArrayList<URI[]>(rows.size() * columns.size());
+		pendingUses = new HashMap<URI,Integer>();
+		int columnTiles = ((columns.size() + side - 1) / side);
+		boolean reverse = false;
+		for (int rowStart = 0; rowStart < rows.size(); rowStart += side)
+		{
+			int rowEnd = Math.min(rows.size(), (rowStart + side));
+			for (int t = 0; t < columnTiles; t++)
+			{
+				/*
+				 * We walk the column tiles in alternating directions, so that
+				 * the last column tile of one row of tiles is still loaded
+				 * when we start the next one.
+				 */
+				int columnStart = (reverse ? (columnTiles - 1 - t) : t) * side;
+				int columnEnd = Math.min(columns.size(), (columnStart + side));
+				for (URI u1 : rows.subList(rowStart, rowEnd))
+				{
+					for (URI u2 : columns.subList(columnStart, columnEnd))
+					{
+						addPair(u1, u2);
+					}
+				}
+			}
+			reverse = (false == reverse);
+		}
+	}
+
+	private static List<URI> sortedList(Collection<URI> URIs)
+	{
+		List<URI> list = new ArrayList<URI>(URIs);
+		Collections.sort(list);
+		return list;
+	}
+
+	private void addPair(URI u1, URI u2)
+	{
+		if (u1.equals(u2))
+		{
+			return;
+		}
+		if (isSymmetric(u1, u2) && (u1.compareTo(u2) > 0))
+		{
+			// Covered by the inverse pair.
+			return;
+		}
+		pairs.add(new URI[] { u1, u2 });
+		addUse(u1);
+		addUse(u2);
+	}
+
+	private void addUse(URI u)
+	{
+		Integer count = pendingUses.get(u);
+		pendingUses.put(u, (null == count) ? 1 : (count + 1));
+	}
+
+	/**
+	 * @return The pairs to compare, in the order in which they should be
+	 * processed.
+	 */
+	public List<URI[]> getPairs()
+	{
+		return Collections.unmodifiableList(pairs);
+	}
+
+	/**
+	 * @param u1 The first ontology of a pair.
+	 * @param u2 The second ontology of a pair.
+	 * @return true if the comparison of u1 against u2 also needs to produce
+	 * the result for u2 against u1.
+	 */
+	public boolean isSymmetric(URI u1, URI u2)
+	{
+		return (symmetric && rowSet.contains(u2) && columnSet.contains(u1));
+	}
+
+	/**
+	 * Marks a pair as processed.
+	 *
+	 * @param u1 The first ontology of the pair.
+	 * @param u2 The second ontology of the pair.
+	 * @return The ontologies that are not needed by any further comparison.
+	 */
+	public synchronized List<URI> pairDone(URI u1, URI u2)
+	{
+		List<URI> unused = new ArrayList<URI>(2);
+		if (releaseUse(u1))
+		{
+			unused.add(u1);
+		}
+		if (releaseUse(u2))
+		{
+			unused.add(u2);
+		}
+		return unused;
+	}
+
+	private boolean releaseUse(URI u)
+	{
+		Integer count = pendingUses.get(u);
+		if (null == count)
+		{
+			return false;
+		}
+		if (1 == count)
+		{
+			pendingUses.remove(u);
+			return true;
+		}
+		pendingUses.put(u, (count - 1));
+		return false;
+	}
+}
@@ -17,24 +17,86 @@
  */
 package de.uni_rostock.goodod.owl;
 
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.SimpleRenderer;
 /**
  * @author Niels Grewe
  * Tracks autogenerated names for class expressions. 
+ *
+ * Names are derived from a hash of the structure of the expression, so a
+ * class expression receives the same name regardless of which thread names
+ * it first and in which order ontologies are normalized. Only expressions
+ * whose hashes collide get a disambiguating suffix, which is handed out in
+ * the order of first use.
+ *
+ * The provider can be used from several threads at once without a global
+ * lock.
  */
 public class ClassExpressionNameProvider {
-	private final Map<OWLClassExpression,IRI> classNameMap;
-	private int generationCount;
+	private final ConcurrentMap<OWLClassExpression,IRI> classNameMap;
+	private final ConcurrentMap<IRI,OWLClassExpression> reverseNameMap;
+	private final AtomicInteger lookups;
+	private final AtomicInteger races;
+	private final AtomicInteger collisions;
+	private final AtomicLong renderedLength;
 	private static ClassExpressionNameProvider sharedProvider = new ClassExpressionNameProvider();
 	final static String autogenerationURI = "http://www.iph.uni-rostock.de/goodod/autogen.owl#AutogeneratedClass";
 
+	/**
+	 * Rough size of a map entry with its key and value wrappers in bytes,
+	 * used to estimate the memory held by the provider.
+	 */
+	private static final int entryOverhead = 128;
+
+	/**
+	 * The SimpleRenderer keeps its output buffer in an instance variable, so
+	 * every thread gets its own. (ToStringRenderer would serialize all
+	 * threads on its monitor.)
+	 */
+	private static final ThreadLocal<SimpleRenderer> renderer = new ThreadLocal<SimpleRenderer>()
+	{
+		@Override
+		protected SimpleRenderer initialValue()
+		{
+			return new SimpleRenderer();
+		}
+	};
+
+	private static final ThreadLocal<MessageDigest> digest = new ThreadLocal<MessageDigest>()
+	{
+		@Override
+		protected MessageDigest initialValue()
+		{
+			try
+			{
+				return MessageDigest.getInstance("SHA-1");
+			}
+			catch (NoSuchAlgorithmException e)
+			{
+				throw new IllegalStateException("SHA-1 is not available.", e);
+			}
+		}
+	};
+
 	public ClassExpressionNameProvider()
 	{
-		classNameMap = new HashMap<OWLClassExpression,IRI>();
-		
+		classNameMap = new ConcurrentHashMap<OWLClassExpression,IRI>();
+		reverseNameMap = new ConcurrentHashMap<IRI,OWLClassExpression>();
+		lookups = new AtomicInteger();
+		races = new AtomicInteger();
+		collisions = new AtomicInteger();
+		renderedLength = new AtomicLong();
 	}
 	
 	public static ClassExpressionNameProvider getSharedProvider()
@@ -42,14 +104,143 @@ public class ClassExpressionNameProvider {
 		return sharedProvider;
 	}
 	
-	public synchronized IRI IRIForClassExpression(OWLClassExpression ce)
+	public IRI IRIForClassExpression(OWLClassExpression ce)
 	{
+		lookups.incrementAndGet();
 		IRI theIRI = classNameMap.get(ce);
-		if (null == theIRI)
+		if (null != theIRI)
+		{
+			return theIRI;
+		}
+		String baseName = autogenerationURI + structuralHash(ce);
+		theIRI = IRI.create(baseName);
+		int suffix = 0;
+		OWLClassExpression existingCE;
+		while ((null != (existingCE = reverseNameMap.putIfAbsent(theIRI, ce)))
+		  && (false == ce.equals(existingCE)))
+		{
+			collisions.incrementAndGet();
+			theIRI = IRI.create(baseName + '-' + (++suffix));
+		}
+		IRI existingIRI = classNameMap.putIfAbsent(ce, theIRI);
+		if (null != existingIRI)
 		{
-			theIRI = IRI.create(autogenerationURI + generationCount++);
-			classNameMap.put(ce, theIRI);
+			// Another thread has named the expression in the meantime.
+			races.incrementAndGet();
+			if (false == existingIRI.equals(theIRI))
+			{
+				reverseNameMap.remove(theIRI, ce);
+			}
+			return existingIRI;
 		}
 		return theIRI;
 	}
+	
+	/**
+	 * Records a name that has been generated earlier (e.g. in an ontology
+	 * that was read back from disk) so that it will be reused for the class
+	 * expression.
+	 * 
+	 * @param ce The class expression.
+	 * @param theIRI The autogenerated IRI for the class expression.
+	 * @return false if either the expression or the IRI is already bound to
+	 * something else, true otherwise.
+	 */
+	public boolean registerIRIForClassExpression(OWLClassExpression ce, IRI theIRI)
+	{
+		OWLClassExpression existingCE = reverseNameMap.putIfAbsent(theIRI, ce);
+		if ((null != existingCE) && (false == ce.equals(existingCE)))
+		{
+			return false;
+		}
+		IRI existingIRI = classNameMap.putIfAbsent(ce, theIRI);
+		if ((null != existingIRI) && (false == theIRI.equals(existingIRI)))
+		{
+			if (null == existingCE)
+			{
+				reverseNameMap.remove(theIRI, ce);
+			}
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * @return A snapshot of all names handed out or registered so far.
+	 */
+	public Map<OWLClassExpression,IRI> getClassExpressionNames()
+	{
+		return new HashMap<OWLClassExpression,IRI>(classNameMap);
+	}
+	
+	public static boolean isAutogeneratedIRI(IRI theIRI)
+	{
+		return theIRI.toString().startsWith(autogenerationURI);
+	}
+
+	/**
+	 * @return The number of named class expressions.
+	 */
+	public int size()
+	{
+		return classNameMap.size();
+	}
+
+	/**
+	 * @return The number of times a name was computed concurrently with
+	 * another thread naming the same expression.
+	 */
+	public int getRaceCount()
+	{
+		return races.get();
+	}
+
+	/**
+	 * @return The number of hash collisions between different expressions.
+	 */
+	public int getCollisionCount()
+	{
+		return collisions.get();
+	}
+
+	/**
+	 * @return A rough estimate of the memory held by the names in bytes.
+	 */
+	public long getEstimatedMemory()
+	{
+		return (classNameMap.size() * (long)entryOverhead) + (2 * renderedLength.get());
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Class expression names: " + classNameMap.size() + " names (approx. "
+		  + (getEstimatedMemory() / 1024) + " KiB), " + lookups.get() + " lookups, "
+		  + races.get() + " concurrent namings, " + collisions.get() + " hash collisions.";
+	}
+
+	/**
+	 * Hashes the functional-style rendering of the expression. OWLAPI keeps
+	 * the operands of n-ary expressions sorted, so the rendering does not
+	 * depend on the order in which the expression was built.
+	 */
+	private String structuralHash(OWLClassExpression ce)
+	{
+		String rendering = renderer.get().render(ce);
+		renderedLength.addAndGet(rendering.length());
+		MessageDigest md = digest.get();
+		md.reset();
+		try
+		{
+			md.update(rendering.getBytes("UTF-8"));
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException("UTF-8 is not available.", e);
+		}
+		// 64 bits are plenty to make collisions between the expressions of
+		// a run unlikely.
+		byte[] hash = md.digest();
+		return NormalizedOntologyStore.hexString(Arrays.copyOf(hash, 8));
+	}
 }
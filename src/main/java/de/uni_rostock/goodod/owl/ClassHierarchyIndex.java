@@ -0,0 +1,404 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 13.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.owl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.semanticweb.owlapi.model.*;
+
+/**
+ * Precomputed transitive closure of the told (named) class hierarchy of a set
+ * of ontologies. Every class is assigned a dense ID and its ancestors and
+ * descendants are stored as bitsets over those IDs.
+ *
+ * The closure has the same semantics as the SubClassCollector and
+ * SuperClassCollector: Only SubClassOf axioms between named classes are
+ * considered, and a class is only its own ancestor or descendant if it is
+ * part of a cycle.
+ *
+ * Instances are immutable and can be shared between threads.
+ *
+ * @author Niels Grewe
+ *
+ */
+public class ClassHierarchyIndex {
+
+	private final OWLClass[] classes;
+	private final Map<OWLClass,Integer> IDs;
+	private final int[][] superClasses;
+	private final BitSet[] ancestors;
+	private final BitSet[] descendants;
+
+	/**
+	 * Builds the index for the told hierarchy in the given ontologies.
+	 *
+	 * @param ontologies The ontologies to take SubClassOf axioms from.
+	 */
+	public ClassHierarchyIndex(Set<OWLOntology> ontologies)
+	{
+		IDs = new HashMap<OWLClass,Integer>();
+		List<OWLClass> classList = new ArrayList<OWLClass>();
+		List<int[]> edges = new ArrayList<int[]>();
+		for (OWLOntology o : ontologies)
+		{
+			for (OWLClass c : o.getClassesInSignature())
+			{
+				getOrAssignID(c, classList);
+			}
+			for (OWLSubClassOfAxiom ax : o.getAxioms(AxiomType.SUBCLASS_OF))
+			{
+				OWLClassExpression sub = ax.getSubClass();
+				OWLClassExpression sup = ax.getSuperClass();
+				if ((sub instanceof OWLClass) && (sup instanceof OWLClass))
+				{
+					edges.add(new int[] { getOrAssignID(sub.asOWLClass(), classList),
+					  getOrAssignID(sup.asOWLClass(), classList) });
+				}
+			}
+		}
+		classes = classList.toArray(new OWLClass[classList.size()]);
+		superClasses = adjacency(edges, 0, 1);
+		int[][] subClasses = adjacency(edges, 1, 0);
+		ancestors = closure(superClasses);
+		descendants = closure(subClasses);
+	}
+
+	/**
+	 * Builds the index for the ontology.
+	 *
+	 * @param ontology The ontology.
+	 * @param includeImports Whether to take the imports closure into account.
+	 * @return The index.
+	 */
+	public static ClassHierarchyIndex build(OWLOntology ontology, boolean includeImports)
+	{
+		if (includeImports)
+		{
+			return new ClassHierarchyIndex(ontology.getImportsClosure());
+		}
+		return new ClassHierarchyIndex(Collections.singleton(ontology));
+	}
+
+	private int getOrAssignID(OWLClass c, List<OWLClass> classList)
+	{
+		Integer ID = IDs.get(c);
+		if (null == ID)
+		{
+			ID = classList.size();
+			IDs.put(c, ID);
+			classList.add(c);
+		}
+		return ID;
+	}
+
+	private int[][] adjacency(List<int[]> edges, int from, int to)
+	{
+		int[] counts = new int[classes.length];
+		for (int[] e : edges)
+		{
+			counts[e[from]]++;
+		}
+		int[][] adjacent = new int[classes.length][];
+		for (int i = 0; i < classes.length; i++)
+		{
+			adjacent[i] = new int[counts[i]];
+		}
+		Arrays.fill(counts, 0);
+		for (int[] e : edges)
+		{
+			adjacent[e[from]][counts[e[from]]++] = e[to];
+		}
+		return adjacent;
+	}
+
+	/**
+	 * Computes the set of nodes reachable in at least one step for every
+	 * node. We collapse the strongly connected components (Tarjan's
+	 * algorithm, without recursion so that deep hierarchies don't exhaust the
+	 * stack) and fill in the reachability sets in reverse topological order.
+	 * Members of the same component share their set.
+	 */
+	private BitSet[] closure(int[][] adjacent)
+	{
+		int n = adjacent.length;
+		int[] index = new int[n];
+		int[] lowLink = new int[n];
+		int[] component = new int[n];
+		boolean[] onStack = new boolean[n];
+		Arrays.fill(index, -1);
+		int[] stack = new int[n];
+		int stackSize = 0;
+		int[] callStack = new int[n];
+		int[] edgePosition = new int[n];
+		int nextIndex = 0;
+		int componentCount = 0;
+		BitSet[] reachable = new BitSet[n];
+		List<Integer> members = new ArrayList<Integer>();
+
+		for (int root = 0; root < n; root++)
+		{
+			if (-1 != index[root])
+			{
+				continue;
+			}
+			int depth = 0;
+			callStack[depth] = root;
+			index[root] = lowLink[root] = nextIndex++;
+			stack[stackSize++] = root;
+			onStack[root] = true;
+			edgePosition[root] = 0;
+			while (depth >= 0)
+			{
+				int v = callStack[depth];
+				if (edgePosition[v] < adjacent[v].length)
+				{
+					int w = adjacent[v][edgePosition[v]++];
+					if (-1 == index[w])
+					{
+						index[w] = lowLink[w] = nextIndex++;
+						stack[stackSize++] = w;
+						onStack[w] = true;
+						edgePosition[w] = 0;
+						callStack[++depth] = w;
+					}
+					else if (onStack[w])
+					{
+						lowLink[v] = Math.min(lowLink[v], index[w]);
+					}
+					continue;
+				}
+				if (lowLink[v] == index[v])
+				{
+					/*
+					 * v is the root of a component. Since Tarjan's algorithm
+					 * finishes components in reverse topological order, all
+					 * components reachable from it are already done.
+					 */
+					members.clear();
+					int w;
+					do
+					{
+						w = stack[--stackSize];
+						onStack[w] = false;
+						component[w] = componentCount;
+						members.add(w);
+					} while (w != v);
+					BitSet reach = new BitSet(n);
+					boolean cyclic = (members.size() > 1);
+					for (int m : members)
+					{
+						for (int u : adjacent[m])
+						{
+							if (component[u] == componentCount)
+							{
+								cyclic = true;
+							}
+							else
+							{
+								reach.set(u);
+								reach.or(reachable[u]);
+							}
+						}
+					}
+					if (cyclic)
+					{
+						for (int m : members)
+						{
+							reach.set(m);
+						}
+					}
+					for (int m : members)
+					{
+						reachable[m] = reach;
+					}
+					componentCount++;
+				}
+				depth--;
+				if (depth >= 0)
+				{
+					int parent = callStack[depth];
+					lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+				}
+			}
+		}
+		return reachable;
+	}
+
+	/**
+	 * Computes the transitive reduction of the told hierarchy. A told
+	 * subsumption between two classes is redundant if there is another class
+	 * between them, i.e. a class that is both a superclass of the subclass
+	 * and a subclass of the superclass.
+	 *
+	 * If neither class is part of a cycle, such a class exists exactly if the
+	 * superclass is also reachable from one of the other direct superclasses
+	 * of the subclass, so we only need to look at the direct superclasses.
+	 * Subsumptions involving cycles are checked against the full ancestor and
+	 * descendant sets.
+	 *
+	 * @return For every class ID, the IDs of the told direct superclasses
+	 * that are not redundant.
+	 */
+	public BitSet[] computeTransitiveReduction()
+	{
+		BitSet[] reduced = new BitSet[classes.length];
+		for (int sub = 0; sub < classes.length; sub++)
+		{
+			int[] direct = superClasses[sub];
+			reduced[sub] = new BitSet();
+			for (int sup : direct)
+			{
+				boolean redundant = false;
+				if (ancestors[sub].get(sub) || ancestors[sup].get(sup))
+				{
+					BitSet between = (BitSet)ancestors[sub].clone();
+					between.and(descendants[sup]);
+					between.clear(sub);
+					between.clear(sup);
+					redundant = (false == between.isEmpty());
+				}
+				else
+				{
+					for (int other : direct)
+					{
+						if ((other != sup) && ancestors[other].get(sup))
+						{
+							redundant = true;
+							break;
+						}
+					}
+				}
+				if (false == redundant)
+				{
+					reduced[sub].set(sup);
+				}
+			}
+		}
+		return reduced;
+	}
+
+	/**
+	 * @return The number of classes in the index.
+	 */
+	public int getClassCount()
+	{
+		return classes.length;
+	}
+
+	/**
+	 * @param c A class.
+	 * @return The ID of the class or -1 if it is not in the index.
+	 */
+	public int getID(OWLClass c)
+	{
+		Integer ID = IDs.get(c);
+		if (null == ID)
+		{
+			return -1;
+		}
+		return ID;
+	}
+
+	/**
+	 * @param ID An ID of a class.
+	 * @return The class with the ID.
+	 */
+	public OWLClass getClass(int ID)
+	{
+		return classes[ID];
+	}
+
+	/**
+	 * @param c A class.
+	 * @return The (direct and indirect) superclasses of c as a new set.
+	 */
+	public Set<OWLClass> getAncestors(OWLClass c)
+	{
+		return classesForBits(ancestors, c);
+	}
+
+	/**
+	 * @param c A class.
+	 * @return The (direct and indirect) subclasses of c as a new set.
+	 */
+	public Set<OWLClass> getDescendants(OWLClass c)
+	{
+		return classesForBits(descendants, c);
+	}
+
+	/**
+	 * @param sub A class.
+	 * @param sup Another class.
+	 * @return true if sup is a (direct or indirect) superclass of sub.
+	 */
+	public boolean isAncestor(OWLClass sub, OWLClass sup)
+	{
+		int subID = getID(sub);
+		int supID = getID(sup);
+		return ((-1 != subID) && (-1 != supID) && ancestors[subID].get(supID));
+	}
+
+	/**
+	 * @param c A class.
+	 * @return The IDs of the superclasses of c. The returned set must not be
+	 * modified.
+	 */
+	public BitSet getAncestorIDs(OWLClass c)
+	{
+		return bitsForClass(ancestors, c);
+	}
+
+	/**
+	 * @param c A class.
+	 * @return The IDs of the subclasses of c. The returned set must not be
+	 * modified.
+	 */
+	public BitSet getDescendantIDs(OWLClass c)
+	{
+		return bitsForClass(descendants, c);
+	}
+
+	private BitSet bitsForClass(BitSet[] bits, OWLClass c)
+	{
+		int ID = getID(c);
+		if (-1 == ID)
+		{
+			return new BitSet();
+		}
+		return bits[ID];
+	}
+
+	private Set<OWLClass> classesForBits(BitSet[] bits, OWLClass c)
+	{
+		BitSet set = bitsForClass(bits, c);
+		Set<OWLClass> result = new HashSet<OWLClass>(Math.max(16, (set.cardinality() * 2)));
+		for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1))
+		{
+			result.add(classes[i]);
+		}
+		return result;
+	}
+}
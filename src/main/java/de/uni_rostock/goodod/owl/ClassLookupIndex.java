@@ -0,0 +1,133 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 14.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.owl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.semanticweb.owlapi.model.*;
+
+/**
+ * Maps the fragments and labels of the classes in an ontology to the
+ * classes, so that corresponding classes from other ontologies can be looked
+ * up without scanning the whole signature. Labels are only taken from the
+ * ontology itself, fragments from its signature (which may include the
+ * imports closure).
+ *
+ * Instances are immutable and can be shared between threads.
+ *
+ * @author Niels Grewe
+ *
+ */
+public class ClassLookupIndex {
+
+	private final Map<OWLClass,Integer> positions;
+	private final Map<String,List<OWLClass>> classesByFragment;
+	private final Map<OWLAnnotationValue,List<OWLClass>> classesByLabel;
+
+	/**
+	 * @param ontology The ontology to index.
+	 * @param includeImports Whether to index the classes from the imports
+	 * closure.
+	 */
+	public ClassLookupIndex(OWLOntology ontology, boolean includeImports)
+	{
+		positions = new HashMap<OWLClass,Integer>();
+		classesByFragment = new HashMap<String,List<OWLClass>>();
+		classesByLabel = new HashMap<OWLAnnotationValue,List<OWLClass>>();
+		for (OWLClass c : ontology.getClassesInSignature(includeImports))
+		{
+			/*
+			 * We remember the position of the class in the signature, so that
+			 * lookups with several candidates yield the one that a scan of the
+			 * signature would have found first.
+			 */
+			positions.put(c, positions.size());
+			String fragment = c.getIRI().getFragment();
+			if (null != fragment)
+			{
+				add(classesByFragment, fragment, c);
+			}
+			for (OWLAnnotationAssertionAxiom ax : ontology.getAnnotationAssertionAxioms(c.getIRI()))
+			{
+				if (ax.getProperty().isLabel())
+				{
+					add(classesByLabel, ax.getValue(), c);
+				}
+			}
+		}
+	}
+
+	private static <K> void add(Map<K,List<OWLClass>> map, K key, OWLClass c)
+	{
+		List<OWLClass> classes = map.get(key);
+		if (null == classes)
+		{
+			classes = new ArrayList<OWLClass>(1);
+			map.put(key, classes);
+		}
+		classes.add(c);
+	}
+
+	/**
+	 * Finds a class in the indexed ontology with the same fragment as, or a
+	 * label in common with the reference class.
+	 *
+	 * @param referenceClass The class to look for.
+	 * @param referenceOntology The ontology to take the labels of the
+	 * reference class from.
+	 * @return The matching class that comes first in the signature or null if
+	 * there is none.
+	 */
+	public OWLClass findClass(OWLClass referenceClass, OWLOntology referenceOntology)
+	{
+		OWLClass best = null;
+		IRI theIRI = referenceClass.getIRI();
+		String fragment = theIRI.getFragment();
+		if (null != fragment)
+		{
+			best = first(best, classesByFragment.get(fragment));
+		}
+		for (OWLAnnotationAssertionAxiom ax : referenceOntology.getAnnotationAssertionAxioms(theIRI))
+		{
+			if (ax.getProperty().isLabel())
+			{
+				best = first(best, classesByLabel.get(ax.getValue()));
+			}
+		}
+		return best;
+	}
+
+	private OWLClass first(OWLClass best, List<OWLClass> candidates)
+	{
+		if (null == candidates)
+		{
+			return best;
+		}
+		for (OWLClass c : candidates)
+		{
+			if ((null == best) || (positions.get(c) < positions.get(best)))
+			{
+				best = c;
+			}
+		}
+		return best;
+	}
+}
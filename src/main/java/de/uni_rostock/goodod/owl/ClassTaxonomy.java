@@ -0,0 +1,267 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 27.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.owl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+
+/**
+ * The inferred class hierarchy of an ontology, as computed by a reasoner:
+ * The classes equivalent to every class and its direct super- and subclasses.
+ * Unlike a reasoner, the taxonomy can be written to and read from a set of
+ * axioms, so that it can be kept across runs.
+ *
+ * Instances are immutable and can be shared between threads.
+ *
+ * @author Niels Grewe
+ *
+ */
+public class ClassTaxonomy {
+
+	private final Map<OWLClass,Set<OWLClass>> equivalents;
+	private final Map<OWLClass,Set<OWLClass>> directSuperClasses;
+	private final Map<OWLClass,Set<OWLClass>> directSubClasses;
+
+	private ClassTaxonomy(Map<OWLClass,Set<OWLClass>> equivalentClasses, Map<OWLClass,Set<OWLClass>> superClasses)
+	{
+		equivalents = equivalentClasses;
+		directSuperClasses = superClasses;
+		directSubClasses = new HashMap<OWLClass,Set<OWLClass>>();
+		for (Map.Entry<OWLClass,Set<OWLClass>> e : superClasses.entrySet())
+		{
+			for (OWLClass sup : e.getValue())
+			{
+				Set<OWLClass> subs = directSubClasses.get(sup);
+				if (null == subs)
+				{
+					subs = new HashSet<OWLClass>();
+					directSubClasses.put(sup, subs);
+				}
+				subs.add(e.getKey());
+			}
+		}
+	}
+
+	/**
+	 * Reads the taxonomy from a reasoner that has classified the ontology.
+	 *
+	 * @param reasoner The reasoner.
+	 * @param classes The classes to include.
+	 * @return The taxonomy.
+	 */
+	public static ClassTaxonomy fromReasoner(OWLReasoner reasoner, Set<OWLClass> classes)
+	{
+		Map<OWLClass,Set<OWLClass>> equivalents = new HashMap<OWLClass,Set<OWLClass>>();
+		Map<OWLClass,Set<OWLClass>> superClasses = new HashMap<OWLClass,Set<OWLClass>>();
+		for (OWLClass c : classes)
+		{
+			if (equivalents.containsKey(c))
+			{
+				continue;
+			}
+			Set<OWLClass> node = new HashSet<OWLClass>(reasoner.getEquivalentClasses(c).getEntities());
+			node.add(c);
+			Set<OWLClass> supers = reasoner.getSuperClasses(c, true).getFlattened();
+			for (OWLClass member : node)
+			{
+				equivalents.put(member, node);
+				superClasses.put(member, supers);
+			}
+		}
+		return new ClassTaxonomy(equivalents, superClasses);
+	}
+
+	/**
+	 * Reads the taxonomy from axioms produced by getAxioms().
+	 *
+	 * @param axioms The axioms.
+	 * @return The taxonomy.
+	 */
+	public static ClassTaxonomy fromAxioms(Set<OWLAxiom> axioms)
+	{
+		Map<OWLClass,Set<OWLClass>> equivalents = new HashMap<OWLClass,Set<OWLClass>>();
+		Map<OWLClass,Set<OWLClass>> superClasses = new HashMap<OWLClass,Set<OWLClass>>();
+		for (OWLAxiom ax : axioms)
+		{
+			if (ax instanceof OWLEquivalentClassesAxiom)
+			{
+				// getNamedClasses() would leave out owl:Thing and owl:Nothing.
+				Set<OWLClass> node = new HashSet<OWLClass>();
+				for (OWLClassExpression ce : ((OWLEquivalentClassesAxiom)ax).getClassExpressions())
+				{
+					node.add(ce.asOWLClass());
+				}
+				for (OWLClass member : node)
+				{
+					equivalents.put(member, node);
+				}
+			}
+			else if (ax instanceof OWLDeclarationAxiom)
+			{
+				OWLEntity e = ((OWLDeclarationAxiom)ax).getEntity();
+				if ((e instanceof OWLClass) && (false == equivalents.containsKey(e)))
+				{
+					equivalents.put(e.asOWLClass(), Collections.singleton(e.asOWLClass()));
+				}
+			}
+		}
+		for (OWLAxiom ax : axioms)
+		{
+			if (false == (ax instanceof OWLSubClassOfAxiom))
+			{
+				continue;
+			}
+			OWLClass sub = ((OWLSubClassOfAxiom)ax).getSubClass().asOWLClass();
+			OWLClass sup = ((OWLSubClassOfAxiom)ax).getSuperClass().asOWLClass();
+			Set<OWLClass> supers = superClasses.get(sub);
+			if (null == supers)
+			{
+				supers = new HashSet<OWLClass>();
+				for (OWLClass member : getNode(equivalents, sub))
+				{
+					superClasses.put(member, supers);
+				}
+			}
+			supers.addAll(getNode(equivalents, sup));
+		}
+		for (OWLClass c : equivalents.keySet())
+		{
+			if (false == superClasses.containsKey(c))
+			{
+				superClasses.put(c, Collections.<OWLClass>emptySet());
+			}
+		}
+		return new ClassTaxonomy(equivalents, superClasses);
+	}
+
+	private static Set<OWLClass> getNode(Map<OWLClass,Set<OWLClass>> equivalents, OWLClass c)
+	{
+		Set<OWLClass> node = equivalents.get(c);
+		if (null == node)
+		{
+			return Collections.singleton(c);
+		}
+		return node;
+	}
+
+	/**
+	 * Writes the taxonomy as axioms. Every class is declared, equivalent
+	 * classes are stated with one EquivalentClasses axiom and the direct
+	 * superclasses with SubClassOf axioms for one member of each set of
+	 * equivalent classes.
+	 *
+	 * @param factory The data factory to create the axioms with.
+	 * @return The axioms.
+	 */
+	public Set<OWLAxiom> getAxioms(OWLDataFactory factory)
+	{
+		Set<OWLAxiom> axioms = new HashSet<OWLAxiom>();
+		Set<Set<OWLClass>> nodes = new HashSet<Set<OWLClass>>();
+		for (Map.Entry<OWLClass,Set<OWLClass>> e : equivalents.entrySet())
+		{
+			axioms.add(factory.getOWLDeclarationAxiom(e.getKey()));
+			if (false == nodes.add(e.getValue()))
+			{
+				continue;
+			}
+			if (1 < e.getValue().size())
+			{
+				axioms.add(factory.getOWLEquivalentClassesAxiom(e.getValue()));
+			}
+			for (OWLClass sup : directSuperClasses.get(e.getKey()))
+			{
+				axioms.add(factory.getOWLSubClassOfAxiom(e.getKey(), sup));
+			}
+		}
+		return axioms;
+	}
+
+	/**
+	 * @return The classes in the taxonomy.
+	 */
+	public Set<OWLClass> getClasses()
+	{
+		return Collections.unmodifiableSet(equivalents.keySet());
+	}
+
+	/**
+	 * @param c A class.
+	 * @return The classes equivalent to c, including c itself.
+	 */
+	public Set<OWLClass> getEquivalentClasses(OWLClass c)
+	{
+		return Collections.unmodifiableSet(getNode(equivalents, c));
+	}
+
+	/**
+	 * @param c A class.
+	 * @return The direct superclasses of c, including all classes equivalent
+	 * to them.
+	 */
+	public Set<OWLClass> getDirectSuperClasses(OWLClass c)
+	{
+		return unmodifiableOrEmpty(directSuperClasses.get(c));
+	}
+
+	/**
+	 * @param c A class.
+	 * @return The direct subclasses of c, including all classes equivalent to
+	 * them.
+	 */
+	public Set<OWLClass> getDirectSubClasses(OWLClass c)
+	{
+		return unmodifiableOrEmpty(directSubClasses.get(c));
+	}
+
+	/**
+	 * @param c A class.
+	 * @return The direct and indirect superclasses of c as a new set. Like
+	 * OWLReasoner.getSuperClasses(), this does not include the classes
+	 * equivalent to c.
+	 */
+	public Set<OWLClass> getSuperClasses(OWLClass c)
+	{
+		Set<OWLClass> result = new HashSet<OWLClass>();
+		LinkedList<OWLClass> queue = new LinkedList<OWLClass>(getDirectSuperClasses(c));
+		while (false == queue.isEmpty())
+		{
+			OWLClass sup = queue.removeFirst();
+			if (result.add(sup))
+			{
+				queue.addAll(getDirectSuperClasses(sup));
+			}
+		}
+		return result;
+	}
+
+	private static Set<OWLClass> unmodifiableOrEmpty(Set<OWLClass> set)
+	{
+		if (null == set)
+		{
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(set);
+	}
+}
@@ -0,0 +1,197 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 27.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.owl;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.io.FileDocumentSource;
+import org.semanticweb.owlapi.model.*;
+
+/**
+ * Keeps the taxonomies computed by the reasoner on disk, so that later runs
+ * don't need to classify unchanged ontologies again. Entries are keyed by the
+ * logical content of the ontology (including its imports) at the time of
+ * classification and a description of the reasoner.
+ *
+ * @author Niels Grewe
+ *
+ */
+public class ClassificationStore {
+
+	/**
+	 * Needs to be changed whenever the format of the stored taxonomies
+	 * changes.
+	 */
+	static final String formatVersion = "1";
+	static final String suffix = ".taxonomy.ofn";
+	private static Log logger = LogFactory.getLog(ClassificationStore.class);
+
+	private final File directory;
+	private final AtomicInteger hits;
+	private final AtomicInteger misses;
+
+	/**
+	 * @param dir The directory to store the taxonomies in.
+	 * @throws IOException If the directory cannot be used.
+	 */
+	public ClassificationStore(File dir) throws IOException
+	{
+		if ((false == dir.isDirectory()) && (false == dir.mkdirs()))
+		{
+			throw new IOException("Could not create directory '" + dir + "'.");
+		}
+		if (false == dir.canWrite())
+		{
+			throw new IOException("Cannot write to directory '" + dir + "'.");
+		}
+		directory = dir;
+		hits = new AtomicInteger();
+		misses = new AtomicInteger();
+	}
+
+	/**
+	 * Computes the key under which the taxonomy of the ontology is stored.
+	 * Only the logical axioms and declarations in the imports closure are
+	 * taken into account, since annotations do not change the taxonomy.
+	 *
+	 * @param ontology The ontology to be classified.
+	 * @param reasonerFingerprint A string describing the reasoner and its
+	 * configuration.
+	 * @return The key or null if it could not be computed.
+	 */
+	public String keyForOntology(OWLOntology ontology, String reasonerFingerprint)
+	{
+		List<String> axioms = new ArrayList<String>();
+		for (OWLOntology o : ontology.getImportsClosure())
+		{
+			for (OWLAxiom ax : o.getAxioms())
+			{
+				if (ax.isLogicalAxiom() || (AxiomType.DECLARATION == ax.getAxiomType()))
+				{
+					axioms.add(ax.getAxiomWithoutAnnotations().toString());
+				}
+			}
+		}
+		// The order of the axioms in the ontology is arbitrary.
+		Collections.sort(axioms);
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			digest.update((formatVersion + '\n' + reasonerFingerprint + '\n').getBytes("UTF-8"));
+			for (String ax : axioms)
+			{
+				digest.update(ax.getBytes("UTF-8"));
+				digest.update((byte)'\n');
+			}
+			return NormalizedOntologyStore.hexString(digest.digest());
+		}
+		catch (Throwable e)
+		{
+			logger.warn("Could not compute key for " + ontology.getOntologyID(), e);
+		}
+		return null;
+	}
+
+	/**
+	 * Loads a taxonomy from the store.
+	 *
+	 * @param key The key, as returned from keyForOntology().
+	 * @return The taxonomy or null if it isn't available.
+	 */
+	public ClassTaxonomy loadTaxonomy(String key)
+	{
+		File file = fileForKey(key);
+		if (false == file.canRead())
+		{
+			misses.incrementAndGet();
+			return null;
+		}
+		try
+		{
+			OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+			OWLOntology ontology = manager.loadOntologyFromOntologyDocument(new FileDocumentSource(file));
+			hits.incrementAndGet();
+			return ClassTaxonomy.fromAxioms(ontology.getAxioms());
+		}
+		catch (Throwable e)
+		{
+			logger.warn("Could not load stored taxonomy from " + file, e);
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Writes a taxonomy to the store.
+	 *
+	 * @param key The key, as returned from keyForOntology().
+	 * @param taxonomy The taxonomy.
+	 */
+	public void storeTaxonomy(String key, ClassTaxonomy taxonomy)
+	{
+		File file = fileForKey(key);
+		try
+		{
+			OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+			OWLOntology ontology = manager.createOntology(taxonomy.getAxioms(manager.getOWLDataFactory()));
+			NormalizedOntologyStore.saveAtomically(ontology, file, directory);
+		}
+		catch (Throwable e)
+		{
+			logger.warn("Could not store taxonomy to " + file, e);
+		}
+	}
+
+	/**
+	 * Logs statistics.
+	 */
+	public void close()
+	{
+		logger.info(toString());
+	}
+
+	public int getHitCount()
+	{
+		return hits.get();
+	}
+
+	public int getMissCount()
+	{
+		return misses.get();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Classification store: " + hits.get() + " hits, " + misses.get() + " misses.";
+	}
+
+	private File fileForKey(String key)
+	{
+		return new File(directory, key + suffix);
+	}
+}
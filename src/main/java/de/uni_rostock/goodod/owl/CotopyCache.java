@@ -0,0 +1,277 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 16.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.owl;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.semanticweb.owlapi.model.OWLClass;
+
+/**
+ * Bounded memo for the semantic cotopies (the class itself and all of its
+ * sub- and superclasses) of classes. Since a class hierarchy index belongs to
+ * exactly one ontology (with or without its imports closure), the cotopies
+ * are keyed by the identity of the index and the class.
+ *
+ * The memo is split into independently locked segments so that comparisons
+ * on different threads don't contend for a single lock. Each segment evicts
+ * its least recently used cotopies once it is full.
+ *
+ * @author Niels Grewe
+ *
+ */
+public class CotopyCache {
+
+	private static final int SEGMENT_COUNT = 16;
+	private final Segment[] segments;
+	private volatile int segmentCapacity;
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+	private final AtomicLong evictions;
+
+	/**
+	 * @param maximumSize The maximum number of cotopies to keep.
+	 */
+	public CotopyCache(int maximumSize)
+	{
+		segments = new Segment[SEGMENT_COUNT];
+		for (int i = 0; i < SEGMENT_COUNT; i++)
+		{
+			segments[i] = new Segment();
+		}
+		hits = new AtomicLong();
+		misses = new AtomicLong();
+		evictions = new AtomicLong();
+		setMaximumSize(maximumSize);
+	}
+
+	/**
+	 * Sets the maximum number of cotopies to keep. Segments that are over
+	 * the new limit shrink as new cotopies are added to them.
+	 */
+	public void setMaximumSize(int maximumSize)
+	{
+		segmentCapacity = Math.max(1, (maximumSize / SEGMENT_COUNT));
+	}
+
+	public int getMaximumSize()
+	{
+		return (segmentCapacity * SEGMENT_COUNT);
+	}
+
+	/**
+	 * Returns the semantic cotopy of the class in the hierarchy, computing it
+	 * if necessary.
+	 *
+	 * @param c The class.
+	 * @param index The hierarchy of the ontology the class is taken from.
+	 * @return The class and all of its sub- and superclasses. The set is not
+	 * modifiable.
+	 */
+	public Set<OWLClass> getSemanticCotopy(OWLClass c, ClassHierarchyIndex index)
+	{
+		Key key = new Key(index, c);
+		Segment segment = segmentFor(key);
+		Set<OWLClass> cotopy;
+		synchronized (segment)
+		{
+			cotopy = segment.get(key);
+		}
+		if (null != cotopy)
+		{
+			hits.incrementAndGet();
+			return cotopy;
+		}
+		misses.incrementAndGet();
+		// Computed outside the lock. Two threads might do it at the same time, but that's harmless.
+		cotopy = computeSemanticCotopy(c, index);
+		synchronized (segment)
+		{
+			segment.put(key, cotopy);
+		}
+		return cotopy;
+	}
+
+	private static Set<OWLClass> computeSemanticCotopy(OWLClass c, ClassHierarchyIndex index)
+	{
+		int ID = index.getID(c);
+		if (-1 == ID)
+		{
+			return Collections.singleton(c);
+		}
+		BitSet bits = (BitSet)index.getAncestorIDs(c).clone();
+		bits.or(index.getDescendantIDs(c));
+		// The class itself belongs to the extract as well and prevents us from doing divisions by zero.
+		bits.set(ID);
+		Set<OWLClass> cotopy = new HashSet<OWLClass>(Math.max(16, (bits.cardinality() * 2)));
+		for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1))
+		{
+			cotopy.add(index.getClass(i));
+		}
+		return Collections.unmodifiableSet(cotopy);
+	}
+
+	/**
+	 * Drops all cotopies computed for the hierarchy.
+	 */
+	public void forget(ClassHierarchyIndex index)
+	{
+		for (Segment segment : segments)
+		{
+			synchronized (segment)
+			{
+				Iterator<Key> iter = segment.keySet().iterator();
+				while (iter.hasNext())
+				{
+					if (iter.next().index == index)
+					{
+						iter.remove();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drops all cotopies.
+	 */
+	public void clear()
+	{
+		for (Segment segment : segments)
+		{
+			synchronized (segment)
+			{
+				segment.clear();
+			}
+		}
+	}
+
+	public int size()
+	{
+		int size = 0;
+		for (Segment segment : segments)
+		{
+			synchronized (segment)
+			{
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+	public long getEvictionCount()
+	{
+		return evictions.get();
+	}
+
+	/**
+	 * @return The fraction of lookups that could be answered from the memo.
+	 */
+	public double getHitRate()
+	{
+		long h = hits.get();
+		long total = h + misses.get();
+		return (0 == total) ? 0 : ((double)h / (double)total);
+	}
+
+	private Segment segmentFor(Key key)
+	{
+		int hash = key.hashCode();
+		// Spread the higher bits, the low bits of identity hashes are not very random.
+		hash ^= (hash >>> 16);
+		return segments[(hash & 0x7fffffff) % SEGMENT_COUNT];
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Cotopy cache: " + getHitCount() + " hits, " + getMissCount() + " misses (hit rate "
+		  + Math.round(getHitRate() * 100) + "%), " + getEvictionCount() + " evictions, " + size() + " of "
+		  + getMaximumSize() + " entries used.";
+	}
+
+	private static class Key
+	{
+		final ClassHierarchyIndex index;
+		final OWLClass c;
+
+		Key(ClassHierarchyIndex theIndex, OWLClass theClass)
+		{
+			index = theIndex;
+			c = theClass;
+		}
+
+		@Override
+		public boolean equals(Object other)
+		{
+			if (false == (other instanceof Key))
+			{
+				return false;
+			}
+			Key key = (Key)other;
+			return ((index == key.index) && c.equals(key.c));
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (31 * System.identityHashCode(index)) + c.hashCode();
+		}
+	}
+
+	/**
+	 * Access ordered map that drops its eldest entry when it grows beyond the
+	 * capacity of a segment. Must only be used while holding its lock.
+	 */
+	private class Segment extends LinkedHashMap<Key,Set<OWLClass>>
+	{
+		private static final long serialVersionUID = 1L;
+
+		Segment()
+		{
+			super(16, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key,Set<OWLClass>> eldest)
+		{
+			if (size() > segmentCapacity)
+			{
+				evictions.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	}
+}
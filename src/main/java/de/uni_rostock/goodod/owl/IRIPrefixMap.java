@@ -0,0 +1,202 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 01.10.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.owl;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.semanticweb.owlapi.model.IRI;
+
+/**
+ * Rewrites IRIs that start with one of a set of prefixes by replacing the
+ * prefix. The prefixes are compiled into a trie, so an IRI is resolved in a
+ * single pass over its characters, independent of the number of prefixes and
+ * without creating a string for it. If several prefixes match, the longest
+ * one is used.
+ *
+ * Results are cached, since the same entities turn up in many axioms.
+ * Instances can be shared between threads.
+ *
+ * @author Niels Grewe
+ *
+ */
+public class IRIPrefixMap {
+
+	private static final int maxCachedIRIs = 65536;
+
+	private final Node root;
+	private final int prefixCount;
+	private final ConcurrentMap<IRI,IRI> resolved;
+	private final AtomicInteger lookups;
+	private final AtomicInteger cacheHits;
+
+	/**
+	 * @param mappings Maps the prefixes to their replacements. May be null.
+	 */
+	public IRIPrefixMap(Map<IRI,IRI> mappings)
+	{
+		BuildNode builder = new BuildNode();
+		if (null != mappings)
+		{
+			for (Map.Entry<IRI,IRI> e : mappings.entrySet())
+			{
+				BuildNode n = builder;
+				IRI prefix = e.getKey();
+				for (int i = 0; i < prefix.length(); i++)
+				{
+					n = n.child(prefix.charAt(i));
+				}
+				n.replacement = e.getValue().toString();
+			}
+		}
+		root = builder.compile();
+		prefixCount = (null == mappings) ? 0 : mappings.size();
+		resolved = new ConcurrentHashMap<IRI,IRI>();
+		lookups = new AtomicInteger();
+		cacheHits = new AtomicInteger();
+	}
+
+	/**
+	 * @return true if there are no prefixes to replace.
+	 */
+	public boolean isEmpty()
+	{
+		return (0 == prefixCount);
+	}
+
+	/**
+	 * @param theIRI An IRI.
+	 * @return The rewritten IRI, or an IRI equal to theIRI if it doesn't
+	 * start with any of the prefixes.
+	 */
+	public IRI rewrite(IRI theIRI)
+	{
+		lookups.incrementAndGet();
+		IRI result = resolved.get(theIRI);
+		if (null != result)
+		{
+			cacheHits.incrementAndGet();
+			return result;
+		}
+		result = theIRI;
+		Node n = root;
+		Node match = null;
+		int matchLength = 0;
+		int length = theIRI.length();
+		for (int i = 0; (null != n); i++)
+		{
+			if (null != n.replacement)
+			{
+				match = n;
+				matchLength = i;
+			}
+			if (i == length)
+			{
+				break;
+			}
+			n = n.child(theIRI.charAt(i));
+		}
+		if (null != match)
+		{
+			result = IRI.create(match.replacement + theIRI.subSequence(matchLength, length));
+		}
+		if (resolved.size() < maxCachedIRIs)
+		{
+			resolved.put(theIRI, result);
+		}
+		return result;
+	}
+
+	/**
+	 * @param theIRI An IRI.
+	 * @return true if rewrite() would change the IRI.
+	 */
+	public boolean needsRewrite(IRI theIRI)
+	{
+		return (false == theIRI.equals(rewrite(theIRI)));
+	}
+
+	@Override
+	public String toString()
+	{
+		return "IRI prefix map: " + prefixCount + " prefixes, " + lookups.get() + " lookups, "
+		  + cacheHits.get() + " cache hits.";
+	}
+
+	/**
+	 * A trie node with its children sorted by character.
+	 */
+	private static class Node
+	{
+		final char[] characters;
+		final Node[] children;
+		final String replacement;
+
+		Node(char[] theCharacters, Node[] theChildren, String theReplacement)
+		{
+			characters = theCharacters;
+			children = theChildren;
+			replacement = theReplacement;
+		}
+
+		Node child(char c)
+		{
+			int index = Arrays.binarySearch(characters, c);
+			if (index < 0)
+			{
+				return null;
+			}
+			return children[index];
+		}
+	}
+
+	private static class BuildNode
+	{
+		final TreeMap<Character,BuildNode> children = new TreeMap<Character,BuildNode>();
+		String replacement;
+
+		BuildNode child(char c)
+		{
+			BuildNode n = children.get(c);
+			if (null == n)
+			{
+				n = new BuildNode();
+				children.put(c, n);
+			}
+			return n;
+		}
+
+		Node compile()
+		{
+			char[] characters = new char[children.size()];
+			Node[] compiled = new Node[children.size()];
+			int i = 0;
+			for (Map.Entry<Character,BuildNode> e : children.entrySet())
+			{
+				characters[i] = e.getKey();
+				compiled[i] = e.getValue().compile();
+				i++;
+			}
+			return new Node(characters, compiled, replacement);
+		}
+	}
+}
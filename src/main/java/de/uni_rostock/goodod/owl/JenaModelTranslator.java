@@ -0,0 +1,211 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 24.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.owl;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.coode.owlapi.rdf.model.AbstractTranslator;
+import org.semanticweb.owlapi.io.RDFOntologyFormat;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
+
+import com.hp.hpl.jena.ontology.OntModel;
+import com.hp.hpl.jena.ontology.OntModelSpec;
+import com.hp.hpl.jena.rdf.model.Literal;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+/**
+ * Translates the axioms of an ontology straight into a JENA model, using the
+ * same mapping to RDF triples as the RDF/XML renderer of the OWLAPI, but
+ * without going through a serialization.
+ *
+ * Like the RDF/XML renderer, the translator inserts declarations for
+ * entities that are used without being typed. Imports declarations are not
+ * translated, so JENA will never try to resolve the imports.
+ *
+ * The ontology is only read, never modified.
+ *
+ * @author Niels Grewe
+ *
+ */
+public class JenaModelTranslator extends AbstractTranslator<RDFNode,Resource,Property,Literal> {
+
+	private final Model model;
+	private final Map<NodeID,Resource> anonymousIndividuals;
+	private final Map<Object,Resource> anonymousNodes;
+
+	private JenaModelTranslator(OWLOntology ontology, Model theModel, Map<NodeID,Resource> individuals)
+	{
+		super(ontology.getOWLOntologyManager(), ontology, true);
+		model = theModel;
+		anonymousIndividuals = individuals;
+		anonymousNodes = new IdentityHashMap<Object,Resource>();
+	}
+
+	/**
+	 * Translates an ontology into a new in-memory OntModel. Only the axioms
+	 * of the ontology itself are translated, not those of its imports.
+	 *
+	 * @param ontology The ontology to translate.
+	 * @return A JENA OntModel (without inference) containing the ontology.
+	 */
+	public static OntModel translateToOntModel(OWLOntology ontology)
+	{
+		return ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM, translateToModel(ontology));
+	}
+
+	/**
+	 * Translates an ontology into a new in-memory RDF model.
+	 *
+	 * @param ontology The ontology to translate.
+	 * @return A plain JENA model containing the triples for the ontology.
+	 */
+	public static Model translateToModel(OWLOntology ontology)
+	{
+		Model base = ModelFactory.createDefaultModel();
+		Map<NodeID,Resource> individuals = new HashMap<NodeID,Resource>();
+
+		JenaModelTranslator header = new JenaModelTranslator(ontology, base, individuals);
+		header.addOntologyHeader(ontology);
+
+		/*
+		 * We use a new translator for every axiom because the translator
+		 * reuses the nodes for structurally equal class expressions, which
+		 * the renderer doesn't do either.
+		 */
+		for (OWLAxiom ax : ontology.getAxioms())
+		{
+			ax.accept(new JenaModelTranslator(ontology, base, individuals));
+		}
+		OWLDataFactory factory = ontology.getOWLOntologyManager().getOWLDataFactory();
+		for (OWLEntity e : ontology.getSignature())
+		{
+			if ((false == e.isBuiltIn()) && RDFOntologyFormat.isMissingType(e, ontology))
+			{
+				factory.getOWLDeclarationAxiom(e).accept(new JenaModelTranslator(ontology, base, individuals));
+			}
+		}
+		return base;
+	}
+
+	private void addOntologyHeader(OWLOntology ontology)
+	{
+		ontology.accept(this);
+		if (ontology.isAnonymous())
+		{
+			return;
+		}
+		OWLOntologyID ID = ontology.getOntologyID();
+		Resource node = getResourceNode(ID.getOntologyIRI());
+		if (null != ID.getVersionIRI())
+		{
+			addTriple(node, getPredicateNode(OWLRDFVocabulary.OWL_VERSION_IRI.getIRI()),
+			  getResourceNode(ID.getVersionIRI()));
+		}
+		for (OWLAnnotation a : ontology.getAnnotations())
+		{
+			OWLAnnotationValue value = a.getValue();
+			RDFNode object = null;
+			if (value instanceof IRI)
+			{
+				object = getResourceNode((IRI)value);
+			}
+			else if (value instanceof OWLLiteral)
+			{
+				object = getLiteralNode((OWLLiteral)value);
+			}
+			else
+			{
+				object = getAnonymousNode(value);
+			}
+			addTriple(node, getPredicateNode(a.getProperty().getIRI()), object);
+		}
+	}
+
+	@Override
+	protected Resource getResourceNode(IRI IRI)
+	{
+		return model.createResource(IRI.toString());
+	}
+
+	@Override
+	protected Property getPredicateNode(IRI IRI)
+	{
+		return model.createProperty(IRI.toString());
+	}
+
+	@Override
+	protected Resource getAnonymousNode(Object key)
+	{
+		if (key instanceof OWLAnonymousIndividual)
+		{
+			// Anonymous individuals keep their identity across axioms.
+			NodeID ID = ((OWLAnonymousIndividual)key).getID();
+			Resource node = anonymousIndividuals.get(ID);
+			if (null == node)
+			{
+				node = model.createResource();
+				anonymousIndividuals.put(ID, node);
+			}
+			return node;
+		}
+		// Like the RDFTranslator, we keep one node per object.
+		Resource node = anonymousNodes.get(key);
+		if (null == node)
+		{
+			node = model.createResource();
+			anonymousNodes.put(key, node);
+		}
+		return node;
+	}
+
+	@Override
+	protected Literal getLiteralNode(OWLLiteral literal)
+	{
+		if (false == literal.isRDFPlainLiteral())
+		{
+			return model.createTypedLiteral(literal.getLiteral(), literal.getDatatype().getIRI().toString());
+		}
+		if (literal.hasLang())
+		{
+			return model.createLiteral(literal.getLiteral(), literal.getLang());
+		}
+		return model.createLiteral(literal.getLiteral());
+	}
+
+	@Override
+	protected void addTriple(Resource subject, Property predicate, RDFNode object)
+	{
+		/*
+		 * The renderers write lists as collections, which don't produce
+		 * rdf:List type triples when parsed, so we leave them out as well.
+		 */
+		if (RDF.type.equals(predicate) && RDF.List.equals(object))
+		{
+			return;
+		}
+		model.add(subject, predicate, object);
+	}
+}
@@ -0,0 +1,64 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 17.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.owl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns dense int IDs to keys (i.e. arbitrary objects with proper equals()
+ * and hashCode() implementations). Equal keys get the same ID for as long as
+ * the interner exists, so IDs handed out for different ontologies can be
+ * compared directly.
+ *
+ * @author Niels Grewe
+ *
+ */
+public class KeyInterner {
+
+	private final Map<Object,Integer> IDs;
+
+	public KeyInterner()
+	{
+		IDs = new HashMap<Object,Integer>();
+	}
+
+	/**
+	 * @param key The key.
+	 * @return The ID of the key, assigning the next free one if the key is
+	 * new.
+	 */
+	public synchronized int intern(Object key)
+	{
+		Integer ID = IDs.get(key);
+		if (null == ID)
+		{
+			ID = IDs.size();
+			IDs.put(key, ID);
+		}
+		return ID;
+	}
+
+	/**
+	 * @return The number of IDs handed out so far.
+	 */
+	public synchronized int size()
+	{
+		return IDs.size();
+	}
+}
@@ -0,0 +1,361 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 03.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.owl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.io.FileDocumentSource;
+import org.semanticweb.owlapi.io.OWLFunctionalSyntaxOntologyFormat;
+import org.semanticweb.owlapi.model.*;
+
+/**
+ * Keeps normalized ontologies on disk so that later runs can skip loading
+ * and normalizing unchanged ontologies. Entries are keyed by the content of
+ * the source file and a fingerprint of the normalizer configuration.
+ *
+ * Since normalized ontologies contain autogenerated class names, the store
+ * also persists the names handed out by the ClassExpressionNameProvider, so
+ * that stored and freshly normalized ontologies agree on them.
+ *
+ * @author Niels Grewe
+ *
+ */
+public class NormalizedOntologyStore {
+
+	/**
+	 * Needs to be changed whenever the normalizers produce different output
+	 * for the same configuration or the naming scheme of the
+	 * ClassExpressionNameProvider changes.
+	 */
+	static final String formatVersion = "2";
+	static final String suffix = ".ofn";
+	static final String namesFileName = "autogenerated-names-" + formatVersion + suffix;
+	private static final char[] hexDigits = "0123456789abcdef".toCharArray();
+	private static Log logger = LogFactory.getLog(NormalizedOntologyStore.class);
+
+	private final File directory;
+	private final String fingerprint;
+	private final ClassExpressionNameProvider nameProvider;
+	private final AtomicInteger hits;
+	private final AtomicInteger misses;
+
+	/**
+	 *
+	 * @param dir The directory to store the normalized ontologies in.
+	 * @param normalizerFingerprint A string describing the normalizer
+	 * configuration. Stored ontologies will only be reused if it is unchanged.
+	 * @param provider The name provider used for normalization.
+	 * @throws IOException If the directory cannot be used.
+	 */
+	public NormalizedOntologyStore(File dir, String normalizerFingerprint, ClassExpressionNameProvider provider) throws IOException
+	{
+		if ((false == dir.isDirectory()) && (false == dir.mkdirs()))
+		{
+			throw new IOException("Could not create directory '" + dir + "'.");
+		}
+		if (false == dir.canWrite())
+		{
+			throw new IOException("Cannot write to directory '" + dir + "'.");
+		}
+		directory = dir;
+		fingerprint = formatVersion + '\n' + normalizerFingerprint;
+		nameProvider = provider;
+		hits = new AtomicInteger();
+		misses = new AtomicInteger();
+		loadNames();
+	}
+
+	/**
+	 * Computes the key under which the normalized version of the file is
+	 * stored.
+	 *
+	 * @param source The file containing the ontology.
+	 * @return The key or null if the file could not be read.
+	 */
+	public String keyForSource(File source)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			digest.update(fingerprint.getBytes("UTF-8"));
+			updateDigest(digest, source);
+			return hexString(digest.digest());
+		}
+		catch (Throwable e)
+		{
+			logger.warn("Could not compute key for " + source, e);
+		}
+		return null;
+	}
+
+	/**
+	 * Loads a normalized ontology from the store.
+	 *
+	 * @param key The key, as returned from keyForSource().
+	 * @param manager The manager to load the ontology into.
+	 * @param config The loader configuration to use.
+	 * @return The normalized ontology or null if it isn't available.
+	 */
+	public OWLOntology loadNormalizedOntology(String key, OWLOntologyManager manager, OWLOntologyLoaderConfiguration config)
+	{
+		File file = fileForKey(key);
+		if (false == file.canRead())
+		{
+			misses.incrementAndGet();
+			return null;
+		}
+		OWLOntology ontology = null;
+		try
+		{
+			ontology = manager.loadOntologyFromOntologyDocument(new FileDocumentSource(file), config);
+		}
+		catch (Throwable e)
+		{
+			logger.warn("Could not load stored ontology from " + file, e);
+			misses.incrementAndGet();
+			return null;
+		}
+
+		if (false == registerNames(ontology))
+		{
+			/*
+			 * The ontology uses names for class expressions that we have
+			 * already given to other expressions, we cannot use it.
+			 */
+			logger.info("Discarding stored ontology with conflicting autogenerated names: " + file);
+			manager.removeOntology(ontology);
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return ontology;
+	}
+
+	/**
+	 * Writes a normalized ontology to the store.
+	 *
+	 * @param key The key, as returned from keyForSource().
+	 * @param ontology The normalized ontology.
+	 */
+	public void storeNormalizedOntology(String key, OWLOntology ontology)
+	{
+		File file = fileForKey(key);
+		try
+		{
+			saveAtomically(ontology, file, directory);
+		}
+		catch (Throwable e)
+		{
+			logger.warn("Could not store normalized ontology to " + file, e);
+		}
+	}
+
+	/**
+	 * Persists the autogenerated names and logs statistics.
+	 */
+	public void close()
+	{
+		storeNames();
+		logger.info("Normalized ontology store: " + hits.get() + " hits, " + misses.get() + " misses.");
+	}
+
+	public int getHitCount()
+	{
+		return hits.get();
+	}
+
+	public int getMissCount()
+	{
+		return misses.get();
+	}
+
+	private File fileForKey(String key)
+	{
+		return new File(directory, key + suffix);
+	}
+
+	/**
+	 * Registers the names of all autogenerated classes in the ontology with
+	 * the name provider.
+	 *
+	 * @param ontology The ontology to get names from.
+	 * @return false if any of the names conflict with names already known to
+	 * the provider.
+	 */
+	private boolean registerNames(OWLOntology ontology)
+	{
+		if (null == nameProvider)
+		{
+			return true;
+		}
+		for (OWLEquivalentClassesAxiom ax : ontology.getAxioms(AxiomType.EQUIVALENT_CLASSES))
+		{
+			for (OWLClass c : ax.getNamedClasses())
+			{
+				if (false == ClassExpressionNameProvider.isAutogeneratedIRI(c.getIRI()))
+				{
+					continue;
+				}
+				for (OWLClassExpression ce : ax.getClassExpressions())
+				{
+					if (ce.isAnonymous()
+					  && (false == nameProvider.registerIRIForClassExpression(ce, c.getIRI())))
+					{
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	private void loadNames()
+	{
+		File namesFile = new File(directory, namesFileName);
+		if (false == namesFile.canRead())
+		{
+			return;
+		}
+		try
+		{
+			OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+			OWLOntology names = manager.loadOntologyFromOntologyDocument(namesFile);
+			if (false == registerNames(names))
+			{
+				logger.warn("Autogenerated names in the store conflict with existing names.");
+			}
+		}
+		catch (Throwable e)
+		{
+			logger.warn("Could not load autogenerated names from " + namesFile, e);
+		}
+	}
+
+	private void storeNames()
+	{
+		if (null == nameProvider)
+		{
+			return;
+		}
+		File namesFile = new File(directory, namesFileName);
+		try
+		{
+			OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+			OWLDataFactory factory = manager.getOWLDataFactory();
+			Set<OWLAxiom> axioms = new HashSet<OWLAxiom>();
+			for (Map.Entry<OWLClassExpression, IRI> e : nameProvider.getClassExpressionNames().entrySet())
+			{
+				axioms.add(factory.getOWLEquivalentClassesAxiom(factory.getOWLClass(e.getValue()), e.getKey()));
+			}
+			saveAtomically(manager.createOntology(axioms), namesFile, directory);
+		}
+		catch (Throwable e)
+		{
+			logger.warn("Could not store autogenerated names to " + namesFile, e);
+		}
+	}
+
+	/**
+	 * Saves the ontology to a temporary file first and moves it into place
+	 * afterwards, so that we never leave partial files around.
+	 */
+	static void saveAtomically(OWLOntology ontology, File file, File directory) throws OWLOntologyStorageException, IOException
+	{
+		File tmpFile = File.createTempFile("store", ".tmp", directory);
+		OWLOntologyManager manager = ontology.getOWLOntologyManager();
+		try
+		{
+			manager.saveOntology(ontology, new OWLFunctionalSyntaxOntologyFormat(), IRI.create(tmpFile));
+			if ((false == tmpFile.renameTo(file))
+			  && ((false == file.delete()) || (false == tmpFile.renameTo(file))))
+			{
+				throw new IOException("Could not move " + tmpFile + " to " + file);
+			}
+		}
+		finally
+		{
+			if (tmpFile.exists())
+			{
+				tmpFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Computes a hexadecimal SHA-1 digest over the contents of a file.
+	 *
+	 * @param source The file to digest.
+	 * @return The digest of the file.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public static String digestForFile(File source) throws IOException
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			updateDigest(digest, source);
+			return hexString(digest.digest());
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			// Every Java platform is required to provide SHA-1.
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	private static void updateDigest(MessageDigest digest, File source) throws IOException
+	{
+		InputStream in = new FileInputStream(source);
+		try
+		{
+			byte[] buffer = new byte[8192];
+			int count = 0;
+			while (-1 != (count = in.read(buffer)))
+			{
+				digest.update(buffer, 0, count);
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	static String hexString(byte[] bytes)
+	{
+		StringBuilder builder = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes)
+		{
+			builder.append(hexDigits[(b >> 4) & 0xf]);
+			builder.append(hexDigits[b & 0xf]);
+		}
+		return builder.toString();
+	}
+}
@@ -24,22 +24,34 @@ import org.semanticweb.owlapi.io.FileDocumentSource;
 import org.semanticweb.owlapi.model.*;
 
 import de.uni_rostock.goodod.owl.normalization.NormalizerFactory;
+import de.uni_rostock.goodod.tools.Throttle;
 
 
 import java.io.File;
 import java.net.URI;
 import java.util.Map.Entry;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Set;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.FutureTask;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Loads and normalizes ontologies asynchronously and keeps them around for
+ * reuse.
+ * 
+ * By default, the cache is unbounded. If a maximum weight is set, the least
+ * recently used ontologies are evicted once the summed weight (i.e. the
+ * number of axioms in the imports closure) of all loaded ontologies exceeds
+ * it. Evicted ontologies are transparently reloaded when they are requested
+ * again.
+ * 
  * @author Niels Grewe <niels.grewe@uni-rostock.de>
  *
  */
@@ -50,10 +62,30 @@ public class OntologyCache {
 	private final OWLOntologyLoaderConfiguration config;
 	private final Set<? extends OWLOntologyIRIMapper> mappers;
 	private final Map<URI,FutureTask<OWLOntology>> futures;
+	private final Map<URI,Integer> weights;
+	private final Map<URI,OWLOntology> loadedOntologies;
+	private final Map<OWLOntology,Map<Object,Object>> attachments;
+	private long totalWeight;
+	private long maximumWeight;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
 	private static Log logger = LogFactory.getLog(OntologyCache.class);
 	private static OntologyCache sharedCache;
 	private NormalizerFactory normalizerFactory;
-	private AtomicInteger pendingFutures;
+	private NormalizedOntologyStore store;
+	private ClassificationStore classifications;
+	private SharedImportLayer sharedImports;
+	private final Throttle loadThrottle;
+	private final CotopyCache cotopies;
+	private final KeyInterner keys;
+	private final TermVectorSpace termVectors;
+	private final TermVectorSpace termVectorsWithoutImports;
+	private static final int defaultCotopyCount = 100000;
+	private static final String hierarchyIndexKey = "ClassHierarchyIndex";
+	private static final String hierarchyIndexWithoutImportsKey = "ClassHierarchyIndexWithoutImports";
+	private static final String lookupIndexKey = "ClassLookupIndex";
+	private static final String lookupIndexWithoutImportsKey = "ClassLookupIndexWithoutImports";
 	static public IRI originallyDefinedIRI = IRI.create("http://www.iph.uni-rostock.de/goodod/autogen.owl#originallyDefined");
 
 	public static synchronized OntologyCache getSharedCache()
@@ -72,7 +104,8 @@ public class OntologyCache {
 	public OntologyCache(Set<? extends OWLOntologyIRIMapper>IRIMappers, Set<IRI>importsToIgnore, int threads)
 	{
 		threadCount = threads;
-		pendingFutures = new AtomicInteger(0);
+		// Allow one load to queue up behind each worker thread.
+		loadThrottle = new Throttle("Ontology loads", (threadCount + 1));
 		executor = Executors.newFixedThreadPool(threadCount);
 		OWLOntologyLoaderConfiguration interimConfig = new OWLOntologyLoaderConfiguration();
 		
@@ -83,13 +116,22 @@ public class OntologyCache {
 		interimConfig = interimConfig.setMissingImportHandlingStrategy(MissingImportHandlingStrategy.SILENT);
 		config = interimConfig;
 		mappers = IRIMappers;
-		futures = new HashMap<URI,FutureTask<OWLOntology>>(24);
+		// Access ordered, so that we can evict the least recently used entries.
+		futures = new LinkedHashMap<URI,FutureTask<OWLOntology>>(24, 0.75f, true);
+		weights = new HashMap<URI,Integer>(24);
+		loadedOntologies = new HashMap<URI,OWLOntology>(24);
+		// Identity based, ontologies with the same ID are still different. 
+		attachments = new IdentityHashMap<OWLOntology,Map<Object,Object>>(24);
+		cotopies = new CotopyCache(defaultCotopyCount);
+		keys = new KeyInterner();
+		termVectors = new TermVectorSpace(true);
+		termVectorsWithoutImports = new TermVectorSpace(false);
 	}
 	
 	public OWLOntology getOntologySynchronouslyAtURI(URI theURI) throws OWLOntologyCreationException
 	{
 		OWLOntology ontology = null;
-		FutureTask<OWLOntology>ontologyFuture = getOntologyFutureAtURI(theURI);
+		FutureTask<OWLOntology>ontologyFuture = getOntologyAtURI(theURI);
 		try
 		{
 			ontology = ontologyFuture.get();
@@ -102,11 +144,6 @@ public class OntologyCache {
 		return ontology;
 	}
 	
-	private synchronized void futureDone()
-	{
-		pendingFutures.decrementAndGet();
-	}
-
 	public synchronized void removeOntologyAtURI(URI u)
 	{
 		FutureTask<OWLOntology> future = futures.get(u);
@@ -119,6 +156,7 @@ public class OntologyCache {
 			future.cancel(true);
 		}
 		futures.remove(u);
+		forgetOntology(u);
 	}
 	
 	public synchronized void flushCache()
@@ -132,35 +170,71 @@ public class OntologyCache {
 			}
 		}
 		futures.clear();
+		weights.clear();
+		loadedOntologies.clear();
+		attachments.clear();
+		cotopies.clear();
+		totalWeight = 0;
 	}
 	
+	/**
+	 * Returns a future for the ontology at the given URI. If the ontology
+	 * needs to be loaded, this blocks until one of the pending loads has
+	 * finished, so that we don't queue up more ontologies than we can
+	 * process.
+	 * 
+	 * @param theURI The URI to load the ontology from.
+	 * @return A future for the loaded and normalized ontology.
+	 * @throws OWLOntologyCreationException If the thread was interrupted while
+	 * waiting for the load to be admitted.
+	 */
 	public FutureTask<OWLOntology> getOntologyAtURI(URI theURI) throws OWLOntologyCreationException
 	{
-		int waitCount = 0;
-		while (pendingFutures.get() > threadCount)
+		FutureTask<OWLOntology> future = getCachedFutureAtURI(theURI);
+		if (null != future)
 		{
-			if (0 == ++waitCount % 8 )
-			{
-				
-				/* 
-				 * Thight loop a few times, then yield in order to let
-				 * the other threads finish.
-				 */
-				Thread.yield();
-			}
+			return future;
+		}
+		try
+		{
+			loadThrottle.acquire();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new OWLOntologyCreationException("Interrupted while waiting to load " + theURI, e);
 		}
 		return getOntologyFutureAtURI(theURI);
 	}
 	
-	private synchronized FutureTask<OWLOntology> getOntologyFutureAtURI(final URI u) throws OWLOntologyCreationException
+	private synchronized FutureTask<OWLOntology> getCachedFutureAtURI(URI u)
+	{
+		FutureTask<OWLOntology> future = futures.get(u);
+		if (null != future)
+		{
+			hitCount++;
+		}
+		return future;
+	}
+	
+	/**
+	 * Creates the future for loading the ontology. Needs to be called with a
+	 * permit from the load throttle, which will be returned once the future
+	 * has completed.
+	 */
+	private synchronized FutureTask<OWLOntology> getOntologyFutureAtURI(final URI u)
 	{
 		FutureTask<OWLOntology> future = null;
 		
 		future = futures.get(u);
 		if (null != future)
 		{
+			// Somebody else started loading it while we were waiting.
+			loadThrottle.release();
+			hitCount++;
 			return future;
 		}
+		missCount++;
 		future = new FutureTask<OWLOntology>(new Callable<OWLOntology>()
 				{
 					public OWLOntology call() throws ExecutionException
@@ -173,8 +247,31 @@ public class OntologyCache {
 								manager.addIRIMapper(m);
 							}
 						}
-						FileDocumentSource source = new FileDocumentSource(new File(u));
+						if (null != sharedImports)
+						{
+							sharedImports.attachTo(manager);
+						}
+						File file = new File(u);
 						OWLOntology ontology;
+						String storeKey = null;
+						if (null != store)
+						{
+							storeKey = store.keyForSource(file);
+						}
+						if (null != storeKey)
+						{
+							ontology = store.loadNormalizedOntology(storeKey, manager, config);
+							if (null != ontology)
+							{
+								logger.info("Using stored normalized ontology for " + u.toString() + ".");
+								// Make sure the ontology is still identified by its original location.
+								manager.setOntologyDocumentIRI(ontology, IRI.create(u));
+								ontologyLoaded(u, ontology);
+								buildIndexes(ontology);
+								return ontology;
+							}
+						}
+						FileDocumentSource source = new FileDocumentSource(file);
 						try 
 						{
 							ontology = manager.loadOntologyFromOntologyDocument(source, config);
@@ -184,23 +281,283 @@ public class OntologyCache {
 							{
 								normalizerFactory.normalize(ontology);
 							}
+							if (null != storeKey)
+							{
+								store.storeNormalizedOntology(storeKey, ontology);
+							}
 						}
 						catch (OWLOntologyCreationException e)
 						{
 							throw new ExecutionException(e);
 						}
-						// Mark this future as done.
-						futureDone();
+						ontologyLoaded(u, ontology);
+						buildIndexes(ontology);
 						return ontology;
-					}});
+					}})
+		{
+			@Override
+			protected void done()
+			{
+				// Called on success, failure and cancellation alike.
+				loadThrottle.release();
+			}
+		};
 		futures.put(u, future);
-		// We track our pending futures
-		pendingFutures.incrementAndGet();
 		executor.execute(future);
 		
 		return future;
 	}
 	
+	/**
+	 * Records the weight of a newly loaded ontology and evicts other
+	 * ontologies if that pushes us over the maximum weight.
+	 * 
+	 * @param u The URI the ontology was loaded from.
+	 * @param ontology The ontology.
+	 */
+	private synchronized void ontologyLoaded(URI u, OWLOntology ontology)
+	{
+		if (false == futures.containsKey(u))
+		{
+			// Removed while we were loading it.
+			return;
+		}
+		int weight = 0;
+		for (OWLOntology o : ontology.getImportsClosure())
+		{
+			if ((null != sharedImports) && sharedImports.isShared(o))
+			{
+				// Shared imports are kept in memory anyways.
+				continue;
+			}
+			weight += o.getAxiomCount();
+		}
+		forgetOntology(u);
+		weights.put(u, weight);
+		totalWeight += weight;
+		loadedOntologies.put(u, ontology);
+		evictIfNeeded();
+	}
+	
+	/**
+	 * Builds the per-ontology indexes used during comparisons, so that they
+	 * are ready once the ontology is handed out.
+	 */
+	private void buildIndexes(OWLOntology ontology)
+	{
+		// Comparisons may read the ontology from several threads at once.
+		SharedImportLayer.warmUp(ontology);
+		getClassHierarchyIndex(ontology, true);
+		getClassLookupIndex(ontology, true);
+	}
+	
+	/**
+	 * Drops everything we know about the ontology loaded from the URI.
+	 */
+	private void forgetOntology(URI u)
+	{
+		Integer weight = weights.remove(u);
+		if (null != weight)
+		{
+			totalWeight -= weight;
+		}
+		OWLOntology ontology = loadedOntologies.remove(u);
+		if (null != ontology)
+		{
+			Map<Object,Object> attached = attachments.remove(ontology);
+			if (null != attached)
+			{
+				for (String key : new String[] { hierarchyIndexKey, hierarchyIndexWithoutImportsKey })
+				{
+					Object index = attached.get(key);
+					if (null != index)
+					{
+						cotopies.forget((ClassHierarchyIndex)index);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns an object attached to an ontology.
+	 * 
+	 * @param ontology The ontology.
+	 * @param key The key the object was attached under.
+	 * @return The attached object or null if there is none.
+	 */
+	public synchronized Object getAttachment(OWLOntology ontology, Object key)
+	{
+		Map<Object,Object> objects = attachments.get(ontology);
+		if (null == objects)
+		{
+			return null;
+		}
+		return objects.get(key);
+	}
+	
+	/**
+	 * Attaches an object (e.g. an index) to an ontology held by the cache.
+	 * Attached objects are discarded along with the ontology. If an object is
+	 * already attached under the key, it is kept. Nothing is attached to
+	 * ontologies that are not held by the cache.
+	 * 
+	 * @param ontology The ontology.
+	 * @param key The key to attach the object under.
+	 * @param value The object to attach.
+	 * @return The object attached under the key after the call. 
+	 */
+	public synchronized Object attach(OWLOntology ontology, Object key, Object value)
+	{
+		Map<Object,Object> objects = attachments.get(ontology);
+		if (null == objects)
+		{
+			if (false == isLoaded(ontology))
+			{
+				return value;
+			}
+			objects = new HashMap<Object,Object>();
+			attachments.put(ontology, objects);
+		}
+		Object existing = objects.get(key);
+		if (null != existing)
+		{
+			return existing;
+		}
+		objects.put(key, value);
+		return value;
+	}
+	
+	private boolean isLoaded(OWLOntology ontology)
+	{
+		for (OWLOntology o : loadedOntologies.values())
+		{
+			if (o == ontology)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns the class hierarchy index for the ontology, building it if
+	 * necessary.
+	 * 
+	 * @param ontology The ontology.
+	 * @param includeImports Whether the index should cover the imports closure.
+	 * @return The index.
+	 */
+	public ClassHierarchyIndex getClassHierarchyIndex(OWLOntology ontology, boolean includeImports)
+	{
+		String key = includeImports ? hierarchyIndexKey : hierarchyIndexWithoutImportsKey;
+		ClassHierarchyIndex index = (ClassHierarchyIndex)getAttachment(ontology, key);
+		if (null == index)
+		{
+			// Build outside the lock, we might end up doing it twice, but that's harmless.
+			index = (ClassHierarchyIndex)attach(ontology, key, ClassHierarchyIndex.build(ontology, includeImports));
+		}
+		return index;
+	}
+	
+	/**
+	 * Returns the index for looking up classes by fragment or label, building
+	 * it if necessary.
+	 * 
+	 * @param ontology The ontology.
+	 * @param includeImports Whether the index should cover the imports closure.
+	 * @return The index.
+	 */
+	public ClassLookupIndex getClassLookupIndex(OWLOntology ontology, boolean includeImports)
+	{
+		String key = includeImports ? lookupIndexKey : lookupIndexWithoutImportsKey;
+		ClassLookupIndex index = (ClassLookupIndex)getAttachment(ontology, key);
+		if (null == index)
+		{
+			index = (ClassLookupIndex)attach(ontology, key, new ClassLookupIndex(ontology, includeImports));
+		}
+		return index;
+	}
+	
+	/**
+	 * Evicts the least recently used ontologies until the cache is within its
+	 * bounds again. Ontologies that are still being loaded are never evicted.
+	 * The most recently used ontology is always kept, even if it exceeds the
+	 * maximum weight on its own.
+	 */
+	private void evictIfNeeded()
+	{
+		if (0 >= maximumWeight)
+		{
+			return;
+		}
+		Iterator<Entry<URI,FutureTask<OWLOntology>>> iter = futures.entrySet().iterator();
+		int remaining = futures.size();
+		while ((totalWeight > maximumWeight) && iter.hasNext() && (remaining-- > 1))
+		{
+			Entry<URI,FutureTask<OWLOntology>> e = iter.next();
+			if ((false == e.getValue().isDone()) || (false == weights.containsKey(e.getKey())))
+			{
+				continue;
+			}
+			logger.debug("Evicting " + e.getKey() + " from the ontology cache.");
+			iter.remove();
+			forgetOntology(e.getKey());
+			evictionCount++;
+		}
+	}
+	
+	/**
+	 * Bounds the cache. A value less than or equal to zero means that the
+	 * cache is unbounded.
+	 * 
+	 * @param weight The maximum summed number of axioms of all ontologies
+	 * (including their imports closure) kept in the cache.
+	 */
+	public synchronized void setMaximumWeight(long weight)
+	{
+		maximumWeight = weight;
+		evictIfNeeded();
+	}
+	
+	public synchronized long getMaximumWeight()
+	{
+		return maximumWeight;
+	}
+	
+	public synchronized long getWeight()
+	{
+		return totalWeight;
+	}
+	
+	/**
+	 * @return The average weight of the ontologies currently in the cache,
+	 * or zero if none have been loaded. 
+	 */
+	public synchronized long getAverageWeight()
+	{
+		if (weights.isEmpty())
+		{
+			return 0;
+		}
+		return totalWeight / weights.size();
+	}
+	
+	public synchronized long getHitCount()
+	{
+		return hitCount;
+	}
+	
+	public synchronized long getMissCount()
+	{
+		return missCount;
+	}
+	
+	public synchronized long getEvictionCount()
+	{
+		return evictionCount;
+	}
+	
 	/**
 	 * Adds annotations to all classes defined in the ontology, stating that
 	 * they originally belong to the ontology. 
@@ -231,6 +588,100 @@ public class OntologyCache {
 		return normalizerFactory;
 	}
 	
+	/**
+	 * Sets a store for normalized ontologies. If set, the cache will try to
+	 * obtain normalized ontologies from the store before loading and
+	 * normalizing them, and will place newly normalized ontologies in the
+	 * store.
+	 * 
+	 * @param s The store to use.
+	 */
+	public void setNormalizedOntologyStore(NormalizedOntologyStore s)
+	{
+		store = s;
+	}
+	
+	public NormalizedOntologyStore getNormalizedOntologyStore()
+	{
+		return store;
+	}
+	
+	/**
+	 * Sets a store for the taxonomies computed when materializing the
+	 * subsumption hierarchy of the ontologies.
+	 * 
+	 * @param s The store to use.
+	 */
+	public void setClassificationStore(ClassificationStore s)
+	{
+		classifications = s;
+	}
+	
+	public ClassificationStore getClassificationStore()
+	{
+		return classifications;
+	}
+	
+	/**
+	 * Sets a layer of preloaded imports. If set, the managers for all
+	 * ontologies loaded afterwards will use the shared ontologies from the
+	 * layer instead of loading their own copies.
+	 * 
+	 * @param layer The layer to use.
+	 */
+	public void setSharedImportLayer(SharedImportLayer layer)
+	{
+		sharedImports = layer;
+	}
+	
+	public SharedImportLayer getSharedImportLayer()
+	{
+		return sharedImports;
+	}
+	
+	/**
+	 * @return The memo for the semantic cotopies of classes in the
+	 * ontologies of this cache.
+	 */
+	public CotopyCache getCotopyCache()
+	{
+		return cotopies;
+	}
+	
+	/**
+	 * @return The interner that assigns IDs to equivalence keys of classes
+	 * from all ontologies of this cache. It is never reset, so the IDs stay
+	 * valid for the lifetime of the cache.
+	 */
+	public KeyInterner getKeyInterner()
+	{
+		return keys;
+	}
+	
+	/**
+	 * @param includeImports Whether the terms should be taken from the
+	 * imports closure.
+	 * @return The term vectors of the ontologies loaded by this cache. They
+	 * are kept when ontologies are removed from the cache, so that the corpus
+	 * stays complete.
+	 */
+	public TermVectorSpace getTermVectorSpace(boolean includeImports)
+	{
+		if (includeImports)
+		{
+			return termVectors;
+		}
+		return termVectorsWithoutImports;
+	}
+	
+	/**
+	 * @return The throttle limiting the number of concurrent loads.
+	 */
+	public Throttle getLoadThrottle()
+	{
+		return loadThrottle;
+	}
+	
 	public OWLOntologyLoaderConfiguration getOntologyLoaderConfiguration()
 	{
 		return config;
@@ -238,7 +689,18 @@ public class OntologyCache {
 	
 	public void teardown()
 	{
+		logger.info("Ontology cache: " + getHitCount() + " hits, " + getMissCount() + " misses, " + getEvictionCount() + " evictions.");
+		logger.info(loadThrottle.toString());
+		logger.info(cotopies.toString());
 		flushCache();
+		if (null != store)
+		{
+			store.close();
+		}
+		if (null != classifications)
+		{
+			classifications.close();
+		}
 		executor.shutdownNow();
 		executor = null;
 		
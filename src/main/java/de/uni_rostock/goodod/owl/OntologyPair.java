@@ -46,6 +46,24 @@ public class OntologyPair {
 			throw exception;
 		}
 	}
+	
+	private OntologyPair(OntologyCache theCache, FutureTask<OWLOntology> theFutureA, FutureTask<OWLOntology> theFutureB)
+	{
+		cache = theCache;
+		futureA = theFutureA;
+		futureB = theFutureB;
+	}
+	
+	/**
+	 * @return A pair of the same ontologies with A and B swapped.
+	 */
+	public OntologyPair getInversePair()
+	{
+		OntologyPair inverse = new OntologyPair(cache, futureB, futureA);
+		inverse.ontologyA = ontologyB;
+		inverse.ontologyB = ontologyA;
+		return inverse;
+	}
 	public OWLOntology getOntologyA() throws InterruptedException, ExecutionException
 	{
 		if (null == ontologyA)
@@ -63,6 +81,11 @@ public class OntologyPair {
 		return ontologyB;
 	}
 	
+	public OntologyCache getOntologyCache()
+	{
+		return cache;
+	}
+	
 	public OWLOntologyLoaderConfiguration getLoaderConfiguration()
 	{
 		return cache.getOntologyLoaderConfiguration();
@@ -0,0 +1,289 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 28.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.owl;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.semanticweb.HermiT.Configuration;
+import org.semanticweb.HermiT.Configuration.ExistentialStrategyType;
+import org.semanticweb.HermiT.Configuration.TableauMonitorType;
+import org.semanticweb.HermiT.Reasoner;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.reasoner.InferenceType;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.OWLReasonerConfiguration;
+import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
+import org.semanticweb.owlapi.reasoner.ReasonerInterruptedException;
+import org.semanticweb.owlapi.reasoner.SimpleConfiguration;
+import org.semanticweb.owlapi.reasoner.TimeOutException;
+import org.semanticweb.owlapi.reasoner.structural.StructuralReasonerFactory;
+
+/**
+ * Creates the reasoners used to classify ontologies. The reasoner is
+ * obtained from an OWLReasonerFactory, so any OWLAPI reasoner can be used.
+ * HermiT (the default) and the structural reasoner of the OWLAPI are
+ * available by their short names.
+ *
+ * Classifications can be given a wall-clock budget. A watchdog interrupts
+ * the reasoner once it is exceeded, or once the classifying thread has been
+ * interrupted, so that a single ontology can't block a worker thread
+ * indefinitely.
+ *
+ * @author Niels Grewe
+ *
+ */
+public class ReasonerProvider {
+
+	private static Log logger = LogFactory.getLog(ReasonerProvider.class);
+	private static ReasonerProvider sharedProvider;
+	private static final long checkInterval = 500;
+	private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+	{
+		public Thread newThread(Runnable r)
+		{
+			Thread t = new Thread(r, "Reasoner watchdog");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private final OWLReasonerFactory factory;
+	private final OWLReasonerConfiguration configuration;
+	private final String fingerprint;
+	private final long timeout;
+	private final Set<OWLReasoner> running;
+	private final AtomicInteger classifications;
+	private final AtomicInteger timeouts;
+	private final AtomicInteger cancellations;
+
+	/**
+	 * @param theFactory The factory to create reasoners with.
+	 * @param theConfiguration The configuration for the reasoners.
+	 * @param description Describes the reasoner and its configuration. It is
+	 * used to tell classifications by different reasoners apart.
+	 * @param timeoutMillis The wall-clock budget for a classification in
+	 * milliseconds, or 0 for no limit.
+	 */
+	public ReasonerProvider(OWLReasonerFactory theFactory, OWLReasonerConfiguration theConfiguration, String description, long timeoutMillis)
+	{
+		factory = theFactory;
+		configuration = theConfiguration;
+		fingerprint = description;
+		timeout = timeoutMillis;
+		running = Collections.newSetFromMap(new IdentityHashMap<OWLReasoner,Boolean>());
+		classifications = new AtomicInteger();
+		timeouts = new AtomicInteger();
+		cancellations = new AtomicInteger();
+	}
+
+	/**
+	 * Creates a provider for the named reasoner.
+	 *
+	 * @param name "HermiT", "Structural", or the qualified name of a class
+	 * implementing OWLReasonerFactory.
+	 * @param timeoutMillis The wall-clock budget for a classification in
+	 * milliseconds, or 0 for no limit.
+	 * @return The provider.
+	 * @throws IllegalArgumentException If the reasoner factory can't be
+	 * created.
+	 */
+	public static ReasonerProvider forName(String name, long timeoutMillis)
+	{
+		if ((null == name) || name.equals("HermiT"))
+		{
+			Configuration config = new Configuration();
+			config.throwInconsistentOntologyException = false;
+			config.existentialStrategyType = ExistentialStrategyType.INDIVIDUAL_REUSE;
+			config.tableauMonitorType = TableauMonitorType.NONE;
+			return new ReasonerProvider(new Reasoner.ReasonerFactory(), config,
+			  "HermiT 1.3.8, existentialStrategyType=INDIVIDUAL_REUSE", timeoutMillis);
+		}
+		if (name.equals("Structural"))
+		{
+			return new ReasonerProvider(new StructuralReasonerFactory(), new SimpleConfiguration(),
+			  "Structural", timeoutMillis);
+		}
+		try
+		{
+			Class<? extends OWLReasonerFactory> theClass = ReasonerProvider.class.getClassLoader().loadClass(name).asSubclass(OWLReasonerFactory.class);
+			OWLReasonerFactory theFactory = theClass.newInstance();
+			return new ReasonerProvider(theFactory, new SimpleConfiguration(), name, timeoutMillis);
+		}
+		catch (Throwable e)
+		{
+			throw new IllegalArgumentException("Could not create reasoner factory '" + name + "'.", e);
+		}
+	}
+
+	/**
+	 * @return The provider set up for this process. Defaults to HermiT
+	 * without a time limit.
+	 */
+	public static synchronized ReasonerProvider getSharedProvider()
+	{
+		if (null == sharedProvider)
+		{
+			sharedProvider = forName("HermiT", 0);
+		}
+		return sharedProvider;
+	}
+
+	public static synchronized void setSharedProvider(ReasonerProvider provider)
+	{
+		sharedProvider = provider;
+	}
+
+	/**
+	 * @param ontology The ontology to reason about.
+	 * @return A new reasoner for the ontology. It needs to be disposed by the
+	 * caller.
+	 */
+	public OWLReasoner createReasoner(OWLOntology ontology)
+	{
+		return factory.createReasoner(ontology, configuration);
+	}
+
+	/**
+	 * Lets the reasoner precompute inferences within the budget of the
+	 * provider.
+	 *
+	 * @param reasoner A reasoner created by this provider.
+	 * @param types The inferences to compute.
+	 * @throws TimeOutException If the budget was exceeded.
+	 * @throws ReasonerInterruptedException If the classification was
+	 * cancelled.
+	 */
+	public void precomputeInferences(final OWLReasoner reasoner, InferenceType... types)
+	{
+		final Thread thread = Thread.currentThread();
+		final long deadline = System.currentTimeMillis() + timeout;
+		final boolean[] state = new boolean[] { false, false }; // { done, timed out }
+		Runnable check = new Runnable()
+		{
+			public void run()
+			{
+				synchronized (state)
+				{
+					if (state[0])
+					{
+						return;
+					}
+					boolean expired = ((0 < timeout) && (System.currentTimeMillis() > deadline));
+					if (expired || thread.isInterrupted())
+					{
+						state[1] = expired;
+						reasoner.interrupt();
+					}
+				}
+			}
+		};
+		classifications.incrementAndGet();
+		synchronized (running)
+		{
+			running.add(reasoner);
+		}
+		ScheduledFuture<?> future = watchdog.scheduleWithFixedDelay(check, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+		try
+		{
+			reasoner.precomputeInferences(types);
+		}
+		catch (ReasonerInterruptedException e)
+		{
+			synchronized (state)
+			{
+				if (state[1])
+				{
+					timeouts.incrementAndGet();
+					throw new TimeOutException("Classification exceeded " + timeout + "ms.", e);
+				}
+			}
+			cancellations.incrementAndGet();
+			throw e;
+		}
+		finally
+		{
+			synchronized (state)
+			{
+				state[0] = true;
+			}
+			future.cancel(false);
+			synchronized (running)
+			{
+				running.remove(reasoner);
+			}
+		}
+	}
+
+	/**
+	 * Interrupts all running classifications.
+	 */
+	public void cancelAll()
+	{
+		synchronized (running)
+		{
+			if (false == running.isEmpty())
+			{
+				logger.info("Cancelling " + running.size() + " running classifications.");
+			}
+			for (OWLReasoner r : running)
+			{
+				r.interrupt();
+			}
+		}
+	}
+
+	/**
+	 * @return A description of the reasoner and its configuration.
+	 */
+	public String getFingerprint()
+	{
+		return fingerprint;
+	}
+
+	public long getTimeout()
+	{
+		return timeout;
+	}
+
+	public int getTimeoutCount()
+	{
+		return timeouts.get();
+	}
+
+	public int getCancellationCount()
+	{
+		return cancellations.get();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Reasoner (" + fingerprint + "): " + classifications.get() + " classifications, "
+		  + timeouts.get() + " timed out, " + cancellations.get() + " cancelled.";
+	}
+}
@@ -0,0 +1,395 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 12.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.owl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.io.OWLOntologyDocumentSource;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.reasoner.InferenceType;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.util.SimpleIRIMapper;
+
+/**
+ * Holds imported ontologies (i.e. BioTopLite) that are loaded once and then
+ * shared between the managers of all student ontologies. Managers that are
+ * attached to the layer will use the preloaded ontology instead of parsing
+ * the import again. Shared ontologies are read-only: Changes to them are
+ * vetoed by all attached managers.
+ *
+ * The layer also keeps the classification of the shared ontologies around,
+ * so that subsumptions entailed by the import alone need not be recomputed
+ * for every ontology importing it.
+ *
+ * @author Niels Grewe
+ *
+ */
+public class SharedImportLayer {
+
+	private static Log logger = LogFactory.getLog(SharedImportLayer.class);
+
+	private final OWLOntologyManager manager;
+	private final OWLOntologyLoaderConfiguration config;
+	private final Map<IRI,OWLOntology> ontologiesByIRI;
+	private final Set<OWLOntology> sharedOntologies;
+	private final Set<OWLOntology> rootOntologies;
+	private final Map<OWLOntology,Map<OWLClass,Set<OWLClass>>> taxonomies;
+	private final ImpendingOWLOntologyChangeListener vetoListener;
+
+	/**
+	 * @param loaderConfig The configuration to use when loading the shared
+	 * ontologies.
+	 */
+	public SharedImportLayer(OWLOntologyLoaderConfiguration loaderConfig)
+	{
+		manager = OWLManager.createOWLOntologyManager();
+		config = loaderConfig;
+		ontologiesByIRI = new HashMap<IRI,OWLOntology>();
+		sharedOntologies = Collections.newSetFromMap(new IdentityHashMap<OWLOntology,Boolean>());
+		rootOntologies = Collections.newSetFromMap(new IdentityHashMap<OWLOntology,Boolean>());
+		taxonomies = new IdentityHashMap<OWLOntology,Map<OWLClass,Set<OWLClass>>>();
+		vetoListener = new ImpendingOWLOntologyChangeListener()
+		{
+			public void handleImpendingOntologyChanges(List<? extends OWLOntologyChange> changes) throws OWLOntologyChangeVetoException
+			{
+				for (OWLOntologyChange change : changes)
+				{
+					if (isShared(change.getOntology()))
+					{
+						logger.warn("Refusing to change shared ontology: " + change);
+						throw new OWLOntologyChangeVetoException(change, "Shared ontologies are read-only.");
+					}
+				}
+			}
+		};
+		manager.addImpendingOntologyChangeListener(vetoListener);
+	}
+
+	/**
+	 * Loads an ontology into the layer. Needs to be called before any manager
+	 * is attached to the layer.
+	 *
+	 * @param ontologyIRI The IRI under which the ontology is imported.
+	 * @param documentIRI The IRI to load the ontology from.
+	 * @return The loaded ontology.
+	 * @throws OWLOntologyCreationException If the ontology cannot be loaded.
+	 */
+	public synchronized OWLOntology preload(IRI ontologyIRI, IRI documentIRI) throws OWLOntologyCreationException
+	{
+		manager.addIRIMapper(new SimpleIRIMapper(ontologyIRI, documentIRI));
+		OWLOntology ontology = manager.loadOntology(ontologyIRI);
+		ontologiesByIRI.put(ontologyIRI, ontology);
+		rootOntologies.add(ontology);
+		for (OWLOntology o : ontology.getImportsClosure())
+		{
+			if (sharedOntologies.add(o))
+			{
+				register(o);
+				warmUp(o);
+			}
+		}
+		logger.info("Preloaded shared ontology " + ontologyIRI + ".");
+		return ontology;
+	}
+
+	private void register(OWLOntology ontology)
+	{
+		IRI ontologyIRI = ontology.getOntologyID().getOntologyIRI();
+		if (null != ontologyIRI)
+		{
+			ontologiesByIRI.put(ontologyIRI, ontology);
+		}
+		IRI versionIRI = ontology.getOntologyID().getVersionIRI();
+		if (null != versionIRI)
+		{
+			ontologiesByIRI.put(versionIRI, ontology);
+		}
+		ontologiesByIRI.put(manager.getOntologyDocumentIRI(ontology), ontology);
+	}
+
+	/**
+	 * The indexes of OWLOntologyImpl are built lazily and not in a thread-safe
+	 * way. Since the shared ontologies will be used by many threads at the
+	 * same time, we touch all of them once while we are still alone. The
+	 * ontology cache does the same for the ontologies it hands out.
+	 */
+	static void warmUp(OWLOntology o)
+	{
+		OWLDataFactory f = o.getOWLOntologyManager().getOWLDataFactory();
+		IRI dummy = IRI.create("http://www.iph.uni-rostock.de/goodod/autogen.owl#warmUp");
+		OWLClass c = f.getOWLClass(dummy);
+		OWLObjectProperty op = f.getOWLObjectProperty(dummy);
+		OWLDataProperty dp = f.getOWLDataProperty(dummy);
+		OWLNamedIndividual i = f.getOWLNamedIndividual(dummy);
+		OWLAnnotationProperty ap = f.getOWLAnnotationProperty(dummy);
+		OWLDatatype dt = f.getOWLDatatype(dummy);
+		for (AxiomType<?> type : AxiomType.AXIOM_TYPES)
+		{
+			o.getAxioms(type);
+		}
+		o.getSignature();
+		o.getGeneralClassAxioms();
+		for (OWLEntity e : new OWLEntity[] { c, op, dp, i, ap, dt })
+		{
+			o.getReferencingAxioms(e);
+			o.getDeclarationAxioms(e);
+		}
+		o.getReferencingAxioms(f.getOWLAnonymousIndividual());
+		o.getAnnotationAssertionAxioms(dummy);
+		o.getAxioms(c);
+		o.getAxioms(op);
+		o.getAxioms(dp);
+		o.getAxioms(i);
+		o.getAxioms(ap);
+		o.getAxioms(dt);
+		o.getSubClassAxiomsForSubClass(c);
+		o.getSubClassAxiomsForSuperClass(c);
+		o.getEquivalentClassesAxioms(c);
+		o.getDisjointClassesAxioms(c);
+		o.getDisjointUnionAxioms(c);
+		o.getHasKeyAxioms(c);
+		o.getClassAssertionAxioms(c);
+		o.getObjectSubPropertyAxiomsForSubProperty(op);
+		o.getObjectSubPropertyAxiomsForSuperProperty(op);
+		o.getObjectPropertyDomainAxioms(op);
+		o.getObjectPropertyRangeAxioms(op);
+		o.getInverseObjectPropertyAxioms(op);
+		o.getEquivalentObjectPropertiesAxioms(op);
+		o.getDisjointObjectPropertiesAxioms(op);
+		o.getFunctionalObjectPropertyAxioms(op);
+		o.getInverseFunctionalObjectPropertyAxioms(op);
+		o.getSymmetricObjectPropertyAxioms(op);
+		o.getAsymmetricObjectPropertyAxioms(op);
+		o.getReflexiveObjectPropertyAxioms(op);
+		o.getIrreflexiveObjectPropertyAxioms(op);
+		o.getTransitiveObjectPropertyAxioms(op);
+		o.getDataSubPropertyAxiomsForSubProperty(dp);
+		o.getDataSubPropertyAxiomsForSuperProperty(dp);
+		o.getDataPropertyDomainAxioms(dp);
+		o.getDataPropertyRangeAxioms(dp);
+		o.getEquivalentDataPropertiesAxioms(dp);
+		o.getDisjointDataPropertiesAxioms(dp);
+		o.getFunctionalDataPropertyAxioms(dp);
+		o.getClassAssertionAxioms(i);
+		o.getDataPropertyAssertionAxioms(i);
+		o.getObjectPropertyAssertionAxioms(i);
+		o.getNegativeObjectPropertyAssertionAxioms(i);
+		o.getNegativeDataPropertyAssertionAxioms(i);
+		o.getSameIndividualAxioms(i);
+		o.getDifferentIndividualAxioms(i);
+		o.getSubAnnotationPropertyOfAxioms(ap);
+		o.getAnnotationPropertyDomainAxioms(ap);
+		o.getAnnotationPropertyRangeAxioms(ap);
+		o.getDatatypeDefinitions(dt);
+	}
+
+	/**
+	 * Attaches a manager to the layer. The manager will use the shared
+	 * ontologies when loading imports and refuse to change them.
+	 *
+	 * @param m The manager to attach.
+	 */
+	public void attachTo(OWLOntologyManager m)
+	{
+		m.addOntologyFactory(new SharedOntologyFactory());
+		m.addImpendingOntologyChangeListener(vetoListener);
+	}
+
+	/**
+	 * @param o An ontology.
+	 * @return true if the ontology is shared through the layer.
+	 */
+	public synchronized boolean isShared(OWLOntology o)
+	{
+		return sharedOntologies.contains(o);
+	}
+
+	/**
+	 * @return The ontologies shared through the layer.
+	 */
+	public synchronized Set<OWLOntology> getSharedOntologies()
+	{
+		Set<OWLOntology> ontologies = Collections.newSetFromMap(new IdentityHashMap<OWLOntology,Boolean>());
+		ontologies.addAll(sharedOntologies);
+		return ontologies;
+	}
+
+	private synchronized OWLOntology getOntologyForDocumentIRI(IRI theIRI)
+	{
+		return ontologiesByIRI.get(theIRI);
+	}
+
+	/**
+	 * Returns the classification of the shared ontologies imported by the
+	 * given ontology. Since adding axioms never retracts entailments, all
+	 * subsumptions in it are entailed by the importing ontology as well. A
+	 * missing subsumption means that it isn't known to be entailed.
+	 *
+	 * @param importing The ontology importing shared ontologies.
+	 * @return A map from the named classes of the shared ontologies to their
+	 * entailed (proper and equivalent) named superclasses.
+	 */
+	public Map<OWLClass,Set<OWLClass>> getImportedTaxonomy(OWLOntology importing)
+	{
+		Map<OWLClass,Set<OWLClass>> result = null;
+		for (OWLOntology o : importing.getImportsClosure())
+		{
+			if ((o == importing) || (false == isRoot(o)))
+			{
+				continue;
+			}
+			Map<OWLClass,Set<OWLClass>> taxonomy = getTaxonomy(o);
+			if (null == result)
+			{
+				result = taxonomy;
+				continue;
+			}
+			// Several shared ontologies imported, we need to merge them.
+			Map<OWLClass,Set<OWLClass>> merged = new HashMap<OWLClass,Set<OWLClass>>(result);
+			for (Map.Entry<OWLClass,Set<OWLClass>> e : taxonomy.entrySet())
+			{
+				Set<OWLClass> supers = merged.get(e.getKey());
+				if (null == supers)
+				{
+					merged.put(e.getKey(), e.getValue());
+				}
+				else
+				{
+					supers = new HashSet<OWLClass>(supers);
+					supers.addAll(e.getValue());
+					merged.put(e.getKey(), supers);
+				}
+			}
+			result = merged;
+		}
+		if (null == result)
+		{
+			return Collections.emptyMap();
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	private synchronized boolean isRoot(OWLOntology o)
+	{
+		return rootOntologies.contains(o);
+	}
+
+	/**
+	 * Classifies a shared ontology, or returns the memoized classification.
+	 *
+	 * @return A map from the named classes to their entailed (proper and
+	 * equivalent) named superclasses.
+	 */
+	private synchronized Map<OWLClass,Set<OWLClass>> getTaxonomy(OWLOntology o)
+	{
+		Map<OWLClass,Set<OWLClass>> taxonomy = taxonomies.get(o);
+		if (null != taxonomy)
+		{
+			return taxonomy;
+		}
+		logger.debug("Classifying shared ontology " + o.getOntologyID() + ".");
+		taxonomy = new HashMap<OWLClass,Set<OWLClass>>();
+		ReasonerProvider provider = ReasonerProvider.getSharedProvider();
+		OWLReasoner reasoner = provider.createReasoner(o);
+		try
+		{
+			provider.precomputeInferences(reasoner, InferenceType.CLASS_HIERARCHY);
+			if (reasoner.isConsistent())
+			{
+				for (OWLClass c : o.getClassesInSignature(true))
+				{
+					Set<OWLClass> supers = new HashSet<OWLClass>(reasoner.getSuperClasses(c, false).getFlattened());
+					supers.addAll(reasoner.getEquivalentClasses(c).getEntities());
+					supers.remove(c);
+					taxonomy.put(c, supers);
+				}
+			}
+		}
+		catch (OWLRuntimeException e)
+		{
+			// The taxonomy is only a shortcut, the importing ontologies are classified in full anyway.
+			logger.warn("Could not classify shared ontology " + o.getOntologyID() + ": " + e.getMessage());
+		}
+		finally
+		{
+			reasoner.dispose();
+		}
+		taxonomies.put(o, taxonomy);
+		return taxonomy;
+	}
+
+	/**
+	 * Hands out the shared ontologies to the manager it is attached to.
+	 */
+	private class SharedOntologyFactory implements OWLOntologyFactory
+	{
+		private static final long serialVersionUID = 1L;
+		private OWLOntologyManager ontologyManager;
+
+		public void setOWLOntologyManager(OWLOntologyManager owlOntologyManager)
+		{
+			ontologyManager = owlOntologyManager;
+		}
+
+		public OWLOntologyManager getOWLOntologyManager()
+		{
+			return ontologyManager;
+		}
+
+		public OWLOntology createOWLOntology(OWLOntologyID ontologyID, IRI documentIRI, OWLOntologyCreationHandler handler) throws OWLOntologyCreationException
+		{
+			throw new OWLOntologyCreationException("Cannot create shared ontologies.");
+		}
+
+		public OWLOntology loadOWLOntology(OWLOntologyDocumentSource documentSource, OWLOntologyCreationHandler handler) throws OWLOntologyCreationException
+		{
+			return loadOWLOntology(documentSource, handler, config);
+		}
+
+		public OWLOntology loadOWLOntology(OWLOntologyDocumentSource documentSource, OWLOntologyCreationHandler handler, OWLOntologyLoaderConfiguration configuration) throws OWLOntologyCreationException
+		{
+			OWLOntology ontology = getOntologyForDocumentIRI(documentSource.getDocumentIRI());
+			if (null == ontology)
+			{
+				throw new OWLOntologyCreationException("No shared ontology for " + documentSource.getDocumentIRI());
+			}
+			handler.ontologyCreated(ontology);
+			handler.setOntologyFormat(ontology, manager.getOntologyFormat(ontology));
+			return ontology;
+		}
+
+		public boolean canCreateFromDocumentIRI(IRI documentIRI)
+		{
+			return false;
+		}
+
+		public boolean canLoad(OWLOntologyDocumentSource documentSource)
+		{
+			return (null != getOntologyForDocumentIRI(documentSource.getDocumentIRI()));
+		}
+	}
+}
@@ -0,0 +1,159 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 25.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.owl;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A sparse vector of term frequencies. The terms are identified by the IDs
+ * assigned by a TermVectorSpace and stored in ascending order, so that dot
+ * products can be computed by merging two vectors.
+ *
+ * Instances are immutable and can be shared between threads.
+ *
+ * @author Niels Grewe
+ *
+ */
+public class TermVector {
+
+	private final int[] terms;
+	private final double[] frequencies;
+	private final double norm;
+
+	/**
+	 * @param counts The number of occurrences of every term ID.
+	 */
+	TermVector(Map<Integer,Integer> counts)
+	{
+		terms = new int[counts.size()];
+		int i = 0;
+		for (Integer term : counts.keySet())
+		{
+			terms[i++] = term;
+		}
+		Arrays.sort(terms);
+		frequencies = new double[terms.length];
+		double sum = 0;
+		for (i = 0; i < terms.length; i++)
+		{
+			frequencies[i] = counts.get(terms[i]);
+			sum += (frequencies[i] * frequencies[i]);
+		}
+		norm = Math.sqrt(sum);
+	}
+
+	/**
+	 * @return The number of distinct terms in the vector.
+	 */
+	public int size()
+	{
+		return terms.length;
+	}
+
+	/**
+	 * @param index A position in the vector.
+	 * @return The ID of the term at the position.
+	 */
+	public int getTerm(int index)
+	{
+		return terms[index];
+	}
+
+	/**
+	 * @param index A position in the vector.
+	 * @return The frequency of the term at the position.
+	 */
+	public double getFrequency(int index)
+	{
+		return frequencies[index];
+	}
+
+	/**
+	 * Computes the cosine of the angle between the frequency vectors.
+	 *
+	 * @param other Another vector from the same TermVectorSpace.
+	 * @return The cosine, or 0 if one of the vectors is empty.
+	 */
+	public double cosine(TermVector other)
+	{
+		return cosine(other, null);
+	}
+
+	/**
+	 * Computes the cosine of the angle between the vectors after multiplying
+	 * every frequency with a weight for the term.
+	 *
+	 * @param other Another vector from the same TermVectorSpace.
+	 * @param weights The weights, indexed by term ID, or null to use the
+	 * plain frequencies.
+	 * @return The cosine, or 0 if one of the weighted vectors is zero.
+	 */
+	public double cosine(TermVector other, double[] weights)
+	{
+		double normA = norm;
+		double normB = other.norm;
+		if (null != weights)
+		{
+			normA = weightedNorm(weights);
+			normB = other.weightedNorm(weights);
+		}
+		if ((0 == normA) || (0 == normB))
+		{
+			return 0;
+		}
+		double dot = 0;
+		int i = 0;
+		int j = 0;
+		while ((i < terms.length) && (j < other.terms.length))
+		{
+			if (terms[i] < other.terms[j])
+			{
+				i++;
+			}
+			else if (terms[i] > other.terms[j])
+			{
+				j++;
+			}
+			else
+			{
+				double product = frequencies[i] * other.frequencies[j];
+				if (null != weights)
+				{
+					product *= (weights[terms[i]] * weights[terms[i]]);
+				}
+				dot += product;
+				i++;
+				j++;
+			}
+		}
+		// Guard against rounding pushing identical vectors above 1.
+		return Math.min(1, (dot / (normA * normB)));
+	}
+
+	private double weightedNorm(double[] weights)
+	{
+		double sum = 0;
+		for (int i = 0; i < terms.length; i++)
+		{
+			double w = frequencies[i] * weights[terms[i]];
+			sum += (w * w);
+		}
+		return Math.sqrt(sum);
+	}
+}
@@ -0,0 +1,244 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 25.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.owl;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.snowball.SnowballAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.TermAttribute;
+import org.apache.lucene.util.Version;
+import org.semanticweb.owlapi.model.*;
+
+/**
+ * Collects term frequency vectors for a corpus of ontologies. The terms of an
+ * ontology are taken from the names, labels and comments of the entities in
+ * its signature. Names are split at case changes and non-letters, and all
+ * terms are stemmed.
+ *
+ * Every ontology is identified by its document IRI and only added once,
+ * even if it is loaded several times. Besides the vectors, the space keeps
+ * track of the number of documents every term occurs in, which can be used
+ * to weight the terms by their inverse document frequency. Those weights are
+ * only meaningful once the whole corpus has been added.
+ *
+ * The space can be used by several threads at the same time.
+ *
+ * @author Niels Grewe
+ *
+ */
+public class TermVectorSpace {
+
+	private static Log logger = LogFactory.getLog(TermVectorSpace.class);
+	private final boolean includeImports;
+	private final Analyzer analyzer;
+	private final Map<String,Integer> termIDs;
+	private final ConcurrentMap<IRI,TermVector> documents;
+	private int[] documentFrequencies;
+	private double[] inverseDocumentFrequencies;
+
+	/**
+	 * @param doIncludeImports Whether to take the terms from the imports
+	 * closure of the ontologies.
+	 */
+	public TermVectorSpace(boolean doIncludeImports)
+	{
+		includeImports = doIncludeImports;
+		analyzer = new SnowballAnalyzer(Version.LUCENE_30, "English");
+		termIDs = new HashMap<String,Integer>();
+		documents = new ConcurrentHashMap<IRI,TermVector>();
+		documentFrequencies = new int[64];
+	}
+
+	/**
+	 * Returns the term vector for an ontology, adding it to the corpus if
+	 * necessary.
+	 *
+	 * @param ontology The ontology.
+	 * @return The term frequency vector of the ontology.
+	 */
+	public TermVector getTermVector(OWLOntology ontology)
+	{
+		IRI documentIRI = ontology.getOWLOntologyManager().getOntologyDocumentIRI(ontology);
+		TermVector vector = documents.get(documentIRI);
+		if (null != vector)
+		{
+			return vector;
+		}
+		vector = buildTermVector(ontology);
+		TermVector existing = documents.putIfAbsent(documentIRI, vector);
+		if (null != existing)
+		{
+			return existing;
+		}
+		synchronized (this)
+		{
+			for (int i = 0; i < vector.size(); i++)
+			{
+				documentFrequencies[vector.getTerm(i)]++;
+			}
+			inverseDocumentFrequencies = null;
+		}
+		return vector;
+	}
+
+	/**
+	 * @return The number of ontologies in the corpus.
+	 */
+	public int getDocumentCount()
+	{
+		return documents.size();
+	}
+
+	/**
+	 * @return The number of distinct terms in the corpus.
+	 */
+	public synchronized int getTermCount()
+	{
+		return termIDs.size();
+	}
+
+	/**
+	 * Returns the inverse document frequencies (log(N/df)) of all terms in
+	 * the corpus as it is at the time of the call. They are only recomputed
+	 * after documents have been added.
+	 *
+	 * @return The weights, indexed by term ID. The array must not be modified.
+	 */
+	public synchronized double[] getInverseDocumentFrequencies()
+	{
+		if (null != inverseDocumentFrequencies)
+		{
+			return inverseDocumentFrequencies;
+		}
+		double documentCount = documents.size();
+		double[] weights = new double[termIDs.size()];
+		for (int i = 0; i < weights.length; i++)
+		{
+			if (0 < documentFrequencies[i])
+			{
+				weights[i] = Math.log(documentCount / documentFrequencies[i]);
+			}
+		}
+		inverseDocumentFrequencies = weights;
+		return weights;
+	}
+
+	private TermVector buildTermVector(OWLOntology ontology)
+	{
+		Map<Integer,Integer> counts = new HashMap<Integer,Integer>();
+		Set<OWLOntology> ontologies = includeImports ? ontology.getImportsClosure() : Collections.singleton(ontology);
+		for (OWLEntity e : ontology.getSignature(includeImports))
+		{
+			if (e.isBuiltIn())
+			{
+				continue;
+			}
+			IRI IRI = e.getIRI();
+			String name = IRI.getFragment();
+			if (null == name)
+			{
+				String s = IRI.toString();
+				name = s.substring(s.lastIndexOf('/') + 1);
+			}
+			addTerms(splitName(name), counts);
+			for (OWLOntology o : ontologies)
+			{
+				for (OWLAnnotationAssertionAxiom ax : o.getAnnotationAssertionAxioms(IRI))
+				{
+					OWLAnnotationProperty p = ax.getProperty();
+					if ((p.isLabel() || p.isComment()) && (ax.getValue() instanceof OWLLiteral))
+					{
+						addTerms(((OWLLiteral)ax.getValue()).getLiteral(), counts);
+					}
+				}
+			}
+		}
+		return new TermVector(counts);
+	}
+
+	/**
+	 * Turns names like "hasPart" or "Blood_Cell" into separate words.
+	 */
+	private static String splitName(String name)
+	{
+		StringBuilder builder = new StringBuilder(name.length() + 8);
+		char previous = ' ';
+		for (char c : name.toCharArray())
+		{
+			if (false == Character.isLetterOrDigit(c))
+			{
+				c = ' ';
+			}
+			else if (Character.isUpperCase(c) && Character.isLowerCase(previous))
+			{
+				builder.append(' ');
+			}
+			builder.append(c);
+			previous = c;
+		}
+		return builder.toString();
+	}
+
+	private void addTerms(String text, Map<Integer,Integer> counts)
+	{
+		TokenStream stream = analyzer.tokenStream("text", new StringReader(text));
+		TermAttribute term = stream.addAttribute(TermAttribute.class);
+		try
+		{
+			while (stream.incrementToken())
+			{
+				int ID = getTermID(term.term());
+				Integer count = counts.get(ID);
+				counts.put(ID, (null == count) ? 1 : (count + 1));
+			}
+			stream.close();
+		}
+		catch (IOException e)
+		{
+			// Can't happen when reading from a string.
+			logger.warn("Could not tokenize '" + text + "'.", e);
+		}
+	}
+
+	private synchronized int getTermID(String term)
+	{
+		Integer ID = termIDs.get(term);
+		if (null == ID)
+		{
+			ID = termIDs.size();
+			termIDs.put(term, ID);
+			if (ID >= documentFrequencies.length)
+			{
+				documentFrequencies = Arrays.copyOf(documentFrequencies, (2 * documentFrequencies.length));
+			}
+		}
+		return ID;
+	}
+}
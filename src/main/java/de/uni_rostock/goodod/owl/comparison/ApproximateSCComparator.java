@@ -0,0 +1,155 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 18.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.owl.comparison;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.commons.configuration.SubnodeConfiguration;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.semanticweb.owlapi.model.*;
+
+import de.uni_rostock.goodod.owl.OntologyCache;
+import de.uni_rostock.goodod.owl.OntologyPair;
+import de.uni_rostock.goodod.tools.Configuration;
+
+/**
+ * Semantic cotopy comparison that estimates the taxonomic precision of two
+ * classes from MinHash sketches of their cotopies instead of matching the
+ * classes of the cotopies. The sketches are computed once per class and
+ * ontology, so comparing two classes costs a fixed number of integer
+ * comparisons, no matter how large their cotopies are.
+ *
+ * Classes in the cotopies are identified by their fragment (or IRI), so label
+ * based matches of the delegate are not taken into account, and classes with
+ * the same fragment are counted only once.
+ *
+ * Error bound: With k hash functions (the sketchSize option in the measures
+ * domain, 128 by default), the estimated Jaccard index of two cotopies
+ * deviates from the real one by more than sqrt(ln(2/d) / 2k) with a
+ * probability of at most d (Hoeffding). For k = 128 this is 0.12 with 95%
+ * probability, for k = 512 0.06. The precision of a class a against a class b
+ * is derived from the Jaccard index, which amplifies the error by at most a
+ * factor of 1 + |cotopy(b)|/|cotopy(a)|. Since the precision and recall of
+ * an ontology pair average over all classes, their errors are usually a lot
+ * smaller than that.
+ *
+ * @author Niels Grewe
+ *
+ */
+public class ApproximateSCComparator extends SCComparator {
+
+	private static Log logger = LogFactory.getLog(ApproximateSCComparator.class);
+	private static final int defaultSketchSize = 128;
+	private final int sketchSize;
+	private final Map<OWLOntology,CotopySketchTable> sketchTables;
+
+	/**
+	 * Creates a comparator with the sketch size from the configuration.
+	 */
+	public ApproximateSCComparator(OntologyPair thePair, boolean doIncludeImports)
+	{
+		this(thePair, doIncludeImports, getConfiguredSketchSize());
+	}
+
+	/**
+	 * @param thePair The ontology pair to compare.
+	 * @param doIncludeImports Whether the imports closure of the ontologies
+	 * should be taken into account for comparisons.
+	 * @param theSketchSize The number of hash functions for the sketches.
+	 */
+	public ApproximateSCComparator(OntologyPair thePair, boolean doIncludeImports, int theSketchSize)
+	{
+		super(thePair, doIncludeImports);
+		sketchSize = Math.max(1, theSketchSize);
+		sketchTables = new IdentityHashMap<OWLOntology,CotopySketchTable>(2);
+	}
+
+	private static int getConfiguredSketchSize()
+	{
+		SubnodeConfiguration conf = Configuration.getConfiguration().configurationFromDomainForClassWithShorthandSuffix("measures", ApproximateSCComparator.class, "Comparator");
+		int size = defaultSketchSize;
+		if (null != conf)
+		{
+			size = conf.getInt("sketchSize", defaultSketchSize);
+		}
+		if (size < 1)
+		{
+			logger.warn("Invalid sketch size " + size + ", using " + defaultSketchSize + ".");
+			size = defaultSketchSize;
+		}
+		return size;
+	}
+
+	@Override
+	protected SCComparator createComparator(OntologyPair thePair)
+	{
+		return new ApproximateSCComparator(thePair, includeImports, sketchSize);
+	}
+
+	@Override
+	protected String getComparisonMethod()
+	{
+		return "Approximate Semantic Cotopy Comparison (" + sketchSize + " hash functions)";
+	}
+
+	/**
+	 * Returns the sketches for the ontology. They don't depend on the pair,
+	 * so they are shared through the ontology cache.
+	 */
+	private CotopySketchTable getSketchTable(OWLOntology o)
+	{
+		synchronized (sketchTables)
+		{
+			CotopySketchTable table = sketchTables.get(o);
+			if (null == table)
+			{
+				OntologyCache cache = getOntologyCache();
+				Object key = new SimpleImmutableEntry<String,Integer>((includeImports ? "CotopySketches" : "CotopySketchesWithoutImports"), sketchSize);
+				table = (CotopySketchTable)cache.getAttachment(o, key);
+				if (null == table)
+				{
+					table = (CotopySketchTable)cache.attach(o, key, new CotopySketchTable(getHierarchyIndex(o), sketchSize));
+				}
+				sketchTables.put(o, table);
+			}
+			return table;
+		}
+	}
+
+	@Override
+	protected double computeTaxonomicPrecision(OWLClass classA, OWLClass classB, OWLOntology ontA, OWLOntology ontB)
+	{
+		if ((null == classA) || (null == classB))
+		{
+			//If one of the classes is null, we just return zero.
+			return 0;
+		}
+		CotopySketchTable tableA = getSketchTable(ontA);
+		CotopySketchTable tableB = getSketchTable(ontB);
+		int IDA = tableA.getID(classA);
+		int IDB = tableB.getID(classB);
+		if ((-1 == IDA) || (-1 == IDB))
+		{
+			return super.computeTaxonomicPrecision(classA, classB, ontA, ontB);
+		}
+		return CotopySketchTable.estimateContainment(tableA.getSketch(IDA), tableB.getSketch(IDB));
+	}
+}
@@ -17,9 +17,19 @@
  */
 package de.uni_rostock.goodod.owl.comparison;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.semanticweb.owlapi.model.*;
 
 import de.uni_rostock.goodod.owl.OntologyPair;
@@ -33,11 +43,65 @@ import de.uni_rostock.goodod.owl.OntologyPair;
  */
 public class CSCComparator extends SCComparator {
 
+	private static Log logger = LogFactory.getLog(CSCComparator.class);
+	private final ClassMemo<Set<OWLClass>> commonCotopies;
+	private final ClassMemo<ExtractProfile> profiles;
+	private final Map<OWLOntology,List<OWLClass>> unmatchedClasses;
+	private final AtomicLong candidateCount;
+	private final AtomicLong prunedCount;
+	
 	public CSCComparator(OntologyPair thePair, boolean doIncludeImports)
 	{
 		super(thePair, doIncludeImports);
+		commonCotopies = new ClassMemo<Set<OWLClass>>();
+		profiles = new ClassMemo<ExtractProfile>();
+		unmatchedClasses = new IdentityHashMap<OWLOntology,List<OWLClass>>(2);
+		candidateCount = new AtomicLong();
+		prunedCount = new AtomicLong();
 	}
 	
+	@Override
+	public void setDelegate(ComparatorDelegate del)
+	{
+		super.setDelegate(del);
+		// Everything we remember depends on the delegate.
+		commonCotopies.clear();
+		profiles.clear();
+		synchronized (unmatchedClasses)
+		{
+			unmatchedClasses.clear();
+		}
+	}
+	
+	/**
+	 * @return The number of candidates considered when estimating the
+	 * precision for classes that are missing from one of the ontologies.
+	 */
+	public long getCandidateCount()
+	{
+		return candidateCount.get();
+	}
+	
+	/**
+	 * @return The number of candidates that were skipped because they could
+	 * not have improved the estimate.
+	 */
+	public long getPrunedCandidateCount()
+	{
+		return prunedCount.get();
+	}
+	
+	@Override
+	protected FMeasureComparisonResult compareClasses(Set<OWLClass> classes, Set<IRI> notFound) throws InterruptedException, ExecutionException
+	{
+		FMeasureComparisonResult result = super.compareClasses(classes, notFound);
+		if (logger.isDebugEnabled())
+		{
+			logger.debug("Pruned " + getPrunedCandidateCount() + " of " + getCandidateCount()
+			  + " candidates for missing classes.");
+		}
+		return result;
+	}
 	
 	/**
 	 * Gets a characteristic extract, taking only classes that appear in both
@@ -45,9 +109,26 @@ public class CSCComparator extends SCComparator {
 	 * @param c The class to create an extract for.
 	 * @param ontA The first ontology. 
 	 * @param ontB The second ontology.
-	 * @return The set of all sub- and superclasses that appear in both ontologies.
+	 * @return The set of all sub- and superclasses that appear in both
+	 * ontologies. It must not be modified.
 	 */
 	private Set<OWLClass> commonSemanticCotopy(OWLClass c, OWLOntology ontA, OWLOntology ontB)
+	{
+		/*
+		 * The extract depends on both ontologies of the pair, so we can only
+		 * reuse it within this comparison. This still pays off because the
+		 * precision estimation for missing classes computes the extract of
+		 * the same class against every candidate.
+		 */
+		Set<OWLClass> extract = commonCotopies.get(ontA, c);
+		if (null == extract)
+		{
+			extract = commonCotopies.put(ontA, c, Collections.unmodifiableSet(computeCommonSemanticCotopy(c, ontA, ontB)));
+		}
+		return extract;
+	}
+	
+	private Set<OWLClass> computeCommonSemanticCotopy(OWLClass c, OWLOntology ontA, OWLOntology ontB)
 	{
 		
 		
@@ -74,6 +155,12 @@ public class CSCComparator extends SCComparator {
 		return extract;
 	}
 	
+	@Override
+	protected SCComparator createComparator(OntologyPair thePair)
+	{
+		return new CSCComparator(thePair, includeImports);
+	}
+	
 	@Override
 	protected String getComparisonMethod()
 	{
@@ -101,29 +188,29 @@ public class CSCComparator extends SCComparator {
 			double maxPrecision = 0;
 			if (null == classA)
 			{
-				for (OWLClass c : ontologyA.getClassesInSignature())
+				for (OWLClass c : getUnmatchedClasses(ontologyA, ontologyB))
 				{
-					//Find all classes that are not also in B.
-					if (null == delegate.findClass(c,ontologyB, ontologyA))
+					if (false == canBeatPrecision(c, classB, ontologyA, ontologyB, maxPrecision))
 					{
-						//Test how well they match our concept and use the maximum
-						double newPrecision = computeTaxonomicPrecision(c, classB, ontologyA, ontologyB);
-						maxPrecision = Math.max(maxPrecision, newPrecision);
+						continue;
 					}
+					//Test how well they match our concept and use the maximum
+					double newPrecision = computeTaxonomicPrecision(c, classB, ontologyA, ontologyB);
+					maxPrecision = Math.max(maxPrecision, newPrecision);
 				}
 		
 			}
 			else if (null == classB)
 			{
-				for (OWLClass c : ontologyB.getClassesInSignature())
+				for (OWLClass c : getUnmatchedClasses(ontologyB, ontologyA))
 				{
-					//Find all classes that are not also in A.
-					if (null == delegate.findClass(c,ontologyA, ontologyB))
+					if (false == canBeatPrecision(classA, c, ontologyA, ontologyB, maxPrecision))
 					{
-						// Test how well they match our concept and use the maximum.
-						double newPrecision = computeTaxonomicPrecision(classA, c, ontologyA, ontologyB);
-						maxPrecision = Math.max(maxPrecision, newPrecision);
+						continue;
 					}
+					// Test how well they match our concept and use the maximum.
+					double newPrecision = computeTaxonomicPrecision(classA, c, ontologyA, ontologyB);
+					maxPrecision = Math.max(maxPrecision, newPrecision);
 				}
 			}
 			
@@ -151,7 +238,7 @@ public class CSCComparator extends SCComparator {
 		}
 		Set<OWLClass> extractA = commonSemanticCotopy(classA, ontA, ontB);
 		Set<OWLClass> extractB = commonSemanticCotopy(classB, ontB, ontA);
-		Set<OWLClass> commonExtract = commonClasses(extractA,extractB);
+		Set<OWLClass> commonExtract = commonClasses(extractA, ontA, extractB, ontB);
 		
 		/*
 		 * With common semantic cotopy, it is possible for the extract from
@@ -178,4 +265,191 @@ public class CSCComparator extends SCComparator {
 		return (commonWeight/extractAWeight);
 	}
 	
+	/**
+	 * Finds the classes from the ontology that the delegate cannot find
+	 * using the other ontology as the reference. They are the candidates for
+	 * the precision estimation of missing classes and don't change during the
+	 * comparison.
+	 */
+	private List<OWLClass> getUnmatchedClasses(OWLOntology ontology, OWLOntology other)
+	{
+		synchronized (unmatchedClasses)
+		{
+			List<OWLClass> unmatched = unmatchedClasses.get(ontology);
+			if (null == unmatched)
+			{
+				unmatched = new ArrayList<OWLClass>();
+				for (OWLClass c : ontology.getClassesInSignature())
+				{
+					//Find all classes that are not also in the other ontology.
+					if (null == delegate.findClass(c, other, ontology))
+					{
+						unmatched.add(c);
+					}
+				}
+				unmatchedClasses.put(ontology, unmatched);
+			}
+			return unmatched;
+		}
+	}
+	
+	/**
+	 * Checks whether the taxonomic precision of classA against classB could
+	 * exceed the given value, without computing the common classes of their
+	 * extracts.
+	 *
+	 * Every common class of the extracts shares at least one equivalence key
+	 * with the extract of classB. So the summed weight of the classes in the
+	 * extract of classA, counted once for each of their keys that also occurs
+	 * in the extract of classB, bounds the weight of the common classes from
+	 * above. Since the extracts and their keys are memoized, this costs a
+	 * walk over the smaller of the two key sets.
+	 */
+	private boolean canBeatPrecision(OWLClass classA, OWLClass classB, OWLOntology ontA, OWLOntology ontB, double precision)
+	{
+		candidateCount.incrementAndGet();
+		if (false == (delegate instanceof KeyedComparatorDelegate))
+		{
+			return true;
+		}
+		ExtractProfile profileA = getProfile(classA, ontA, ontB);
+		if (profileA.isEmpty())
+		{
+			// computeTaxonomicPrecision() returns zero for empty extracts.
+			prunedCount.incrementAndGet();
+			return false;
+		}
+		if (false == (profileA.weight > 0))
+		{
+			// Unusual weights, we can't bound anything.
+			return true;
+		}
+		double bound = 1;
+		if (precision < 1)
+		{
+			ExtractProfile profileB = getProfile(classB, ontB, ontA);
+			bound = Math.min(profileA.weight, profileA.getMatchingWeight(profileB.keyWeights.keySet())) / profileA.weight;
+			// Leave some room for the different order in which the weights are added up.
+			bound *= (1 + 1e-9);
+		}
+		if (bound <= precision)
+		{
+			prunedCount.incrementAndGet();
+			return false;
+		}
+		return true;
+	}
+	
+	private ExtractProfile getProfile(OWLClass c, OWLOntology ontA, OWLOntology ontB)
+	{
+		ExtractProfile profile = profiles.get(ontA, c);
+		if (null == profile)
+		{
+			profile = profiles.put(ontA, c, new ExtractProfile(commonSemanticCotopy(c, ontA, ontB), ontA, ontB));
+		}
+		return profile;
+	}
+	
+	/**
+	 * The weight of a common semantic cotopy, and the summed weight of its
+	 * classes for each equivalence key.
+	 */
+	private class ExtractProfile
+	{
+		final int size;
+		final double weight;
+		final Map<Object,Double> keyWeights;
+		
+		ExtractProfile(Set<OWLClass> extract, OWLOntology ontA, OWLOntology ontB)
+		{
+			double extractWeight = 0;
+			keyWeights = new HashMap<Object,Double>();
+			// Same order as in computeTaxonomicPrecision(), so that we get the same sum.
+			for (OWLClass c : extract)
+			{
+				double classWeight = delegate.getClassWeight(c, ontA, ontB);
+				extractWeight += classWeight;
+				for (Object key : getEquivalenceKeys(c, ontA))
+				{
+					Double keyWeight = keyWeights.get(key);
+					keyWeights.put(key, (null == keyWeight) ? classWeight : (keyWeight + classWeight));
+				}
+			}
+			size = extract.size();
+			weight = extractWeight;
+		}
+		
+		boolean isEmpty()
+		{
+			return (0 == size);
+		}
+		
+		double getMatchingWeight(Set<Object> keys)
+		{
+			double matching = 0;
+			if (keys.size() < keyWeights.size())
+			{
+				for (Object key : keys)
+				{
+					Double keyWeight = keyWeights.get(key);
+					if (null != keyWeight)
+					{
+						matching += keyWeight;
+					}
+				}
+			}
+			else
+			{
+				for (Map.Entry<Object,Double> e : keyWeights.entrySet())
+				{
+					if (keys.contains(e.getKey()))
+					{
+						matching += e.getValue();
+					}
+				}
+			}
+			return matching;
+		}
+	}
+	
+	/**
+	 * Remembers values per class for both ontologies of the pair. Ontologies
+	 * are distinguished by identity.
+	 */
+	private static class ClassMemo<V>
+	{
+		private final Map<OWLOntology,Map<OWLClass,V>> values = new IdentityHashMap<OWLOntology,Map<OWLClass,V>>(2);
+		
+		synchronized V get(OWLOntology o, OWLClass c)
+		{
+			Map<OWLClass,V> valuesForOntology = values.get(o);
+			return (null == valuesForOntology) ? null : valuesForOntology.get(c);
+		}
+		
+		/**
+		 * Stores the value unless another thread was faster.
+		 * @return The value stored for the class.
+		 */
+		synchronized V put(OWLOntology o, OWLClass c, V value)
+		{
+			Map<OWLClass,V> valuesForOntology = values.get(o);
+			if (null == valuesForOntology)
+			{
+				valuesForOntology = new HashMap<OWLClass,V>();
+				values.put(o, valuesForOntology);
+			}
+			V existing = valuesForOntology.get(c);
+			if (null != existing)
+			{
+				return existing;
+			}
+			valuesForOntology.put(c, value);
+			return value;
+		}
+		
+		synchronized void clear()
+		{
+			values.clear();
+		}
+	}
 }
@@ -18,49 +18,124 @@
 package de.uni_rostock.goodod.owl.comparison;
 
 
-import java.util.Vector;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
+import org.apache.commons.configuration.SubnodeConfiguration;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.semanticweb.owlapi.model.IRI;
 
 import de.uni_rostock.goodod.owl.OntologyPair;
-import fr.inrialpes.exmo.ontowrap.*;
-import fr.inrialpes.exmo.ontosim.*;
-import fr.inrialpes.exmo.ontosim.vector.CosineVM;
-import fr.inrialpes.exmo.ontosim.vector.model.DocumentCollection;
+import de.uni_rostock.goodod.owl.TermVector;
+import de.uni_rostock.goodod.owl.TermVectorSpace;
+import de.uni_rostock.goodod.tools.Configuration;
 
 /**
  * @author Niels Grewe
  * This class implements comparisons using a cosine vector space model on the
  * ontology labels, weighted by frequency. Cf. Euzenat et al. 2009, p. 15
  * (3.1.2).
+ *
+ * The term vectors are built once per ontology and shared through the
+ * TermVectorSpace of the ontology cache, so a comparison only needs to
+ * compute one sparse dot product. If the terms are weighted by their inverse
+ * document frequency, the document frequencies are taken from the whole
+ * corpus of ontologies in the term vector space.
  */
-public class CosineVMComparator extends OntoSimComparator {
+public class CosineVMComparator implements SymmetricComparator {
 
-	
-	private final Vector<LoadedOntology<?>> ontologyVector = new Vector<LoadedOntology<?>>();;
-	public CosineVMComparator(OntologyPair p, boolean includeImports) throws Throwable
+	enum Weighting { TF, TF_IDF };
+	private static Log logger = LogFactory.getLog(CosineVMComparator.class);
+	private final OntologyPair pair;
+	private final boolean includeImports;
+	private final Weighting weighting;
+
+	public CosineVMComparator(OntologyPair p, boolean doIncludeImports)
+	{
+		super();
+		pair = p;
+		includeImports = doIncludeImports;
+		weighting = getConfiguredWeighting();
+	}
+
+	private static Weighting getConfiguredWeighting()
 	{
-		super(p, includeImports);
-		ontologyVector.add((LoadedOntology<?>)ontologyA);
-		ontologyVector.add((LoadedOntology<?>)ontologyB);
+		SubnodeConfiguration conf = Configuration.getConfiguration().configurationFromDomainForClassWithShorthandSuffix("measures", CosineVMComparator.class, "Comparator");
+		String scheme = "TF";
+		if (null != conf)
+		{
+			scheme = conf.getString("weighting", "TF");
+		}
+		if (scheme.equals("TF-IDF"))
+		{
+			return Weighting.TF_IDF;
+		}
+		if (false == scheme.equals("TF"))
+		{
+			logger.warn("Unknown weighting scheme '" + scheme + "', using TF.");
+		}
+		return Weighting.TF;
 	}
-	
-	public synchronized SimilarityDissimilarityResult compare() throws ExecutionException, InterruptedException
+
+	/**
+	 * @return true if the configured weighting requires the term vectors of
+	 * all ontologies to be known before the first comparison.
+	 */
+	public static boolean needsCompleteCorpus()
+	{
+		return (Weighting.TF_IDF == getConfiguredWeighting());
+	}
+
+	private double getSimilarity() throws ExecutionException, InterruptedException
+	{
+		TermVectorSpace space = pair.getOntologyCache().getTermVectorSpace(includeImports);
+		TermVector vectorA = space.getTermVector(pair.getOntologyA());
+		TermVector vectorB = space.getTermVector(pair.getOntologyB());
+		if (Weighting.TF_IDF == weighting)
+		{
+			return vectorA.cosine(vectorB, space.getInverseDocumentFrequencies());
+		}
+		return vectorA.cosine(vectorB);
+	}
+
+	public SimilarityDissimilarityResult compare() throws ExecutionException, InterruptedException
 	{
-	VectorSpaceMeasure m
-	  = new VectorSpaceMeasure(ontologyVector,new CosineVM(), DocumentCollection.WEIGHT.TF);
-
-	
-	return new SimilarityDissimilarityResult(getComparsionMethod(),
-	  pair,
-	  m.getSim(ontologyA, ontologyB),
-	  m.getDissim(ontologyA, ontologyB));
+		double similarity = getSimilarity();
+		return new SimilarityDissimilarityResult(getComparsionMethod(),
+		  pair,
+		  similarity,
+		  (1 - similarity));
+	}
+
+	public ComparisonResult compare(Set<IRI> iriSet) throws ExecutionException, InterruptedException
+	{
+		logger.warn("Partial comparison unsupported by the cosine vector space model.");
+		return compare();
+	}
+
+	public ComparisonResult[] compareBothWays() throws ExecutionException, InterruptedException
+	{
+		// The cosine is symmetric, so we only need to compute it once.
+		double similarity = getSimilarity();
+		return new ComparisonResult[] {
+		  new SimilarityDissimilarityResult(getComparsionMethod(), pair, similarity, (1 - similarity)),
+		  new SimilarityDissimilarityResult(getComparsionMethod(), pair.getInversePair(), similarity, (1 - similarity)) };
+	}
+
+	public ComparisonResult[] compareBothWays(Set<IRI> iriSet) throws ExecutionException, InterruptedException
+	{
+		logger.warn("Partial comparison unsupported by the cosine vector space model.");
+		return compareBothWays();
 	}
 
-	
 	public String getComparsionMethod()
 	{
+		if (Weighting.TF_IDF == weighting)
+		{
+			return "Cosine index vector space model with TF-IDF weighting";
+		}
 		return "Cosine index vector space model with frequency weighting";
 	}
-	
+
 }
@@ -0,0 +1,182 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 18.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.owl.comparison;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.semanticweb.owlapi.model.*;
+
+import de.uni_rostock.goodod.owl.ClassHierarchyIndex;
+
+/**
+ * MinHash sketches of the semantic cotopies of the classes in an ontology.
+ * The elements of a cotopy are the fragments of its classes (or the full IRI
+ * if there is no fragment), so that the sketches of cotopies from different
+ * ontologies can be compared with each other.
+ *
+ * A sketch consists of the minimum over the elements for each of a fixed
+ * number of hash functions. Two sketches agree at a position with the
+ * probability that equals the Jaccard index of the two cotopies.
+ *
+ * Instances are thread-safe. Sketches are computed on demand and kept for the
+ * lifetime of the table.
+ *
+ * @author Niels Grewe
+ *
+ */
+class CotopySketchTable {
+
+	private final ClassHierarchyIndex index;
+	private final int sketchSize;
+	private final long[] elements;
+	private final AtomicReferenceArray<Sketch> sketches;
+
+	/**
+	 * A sketch together with the exact number of elements in the cotopy.
+	 */
+	static class Sketch
+	{
+		final int[] minima;
+		final int size;
+
+		Sketch(int[] theMinima, int theSize)
+		{
+			minima = theMinima;
+			size = theSize;
+		}
+	}
+
+	/**
+	 * @param theIndex The class hierarchy of the ontology.
+	 * @param theSketchSize The number of hash functions.
+	 */
+	CotopySketchTable(ClassHierarchyIndex theIndex, int theSketchSize)
+	{
+		index = theIndex;
+		sketchSize = theSketchSize;
+		int classCount = index.getClassCount();
+		elements = new long[classCount];
+		for (int i = 0; i < classCount; i++)
+		{
+			IRI theIRI = index.getClass(i).getIRI();
+			String fragment = theIRI.getFragment();
+			elements[i] = hash((null == fragment) ? theIRI.toString() : fragment);
+		}
+		sketches = new AtomicReferenceArray<Sketch>(classCount);
+	}
+
+	/**
+	 * 64 bit FNV-1a hash of the string.
+	 */
+	private static long hash(String s)
+	{
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < s.length(); i++)
+		{
+			h ^= s.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+
+	/**
+	 * Derives the value of the i-th hash function from the hash of an
+	 * element (using the finalizer of MurmurHash3 to mix in the seed).
+	 */
+	private static int hash(long element, int i)
+	{
+		long h = element + ((i + 1) * 0x9e3779b97f4a7c15L);
+		h ^= (h >>> 33);
+		h *= 0xff51afd7ed558ccdL;
+		h ^= (h >>> 33);
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= (h >>> 33);
+		return (int)(h >>> 32);
+	}
+
+	/**
+	 * @return The ID of the class or -1 if it is not part of the table.
+	 */
+	int getID(OWLClass c)
+	{
+		return index.getID(c);
+	}
+
+	int getSketchSize()
+	{
+		return sketchSize;
+	}
+
+	/**
+	 * @return The sketch for the cotopy of the class with the given ID.
+	 */
+	Sketch getSketch(int classID)
+	{
+		Sketch sketch = sketches.get(classID);
+		if (null == sketch)
+		{
+			OWLClass c = index.getClass(classID);
+			BitSet cotopy = (BitSet)index.getAncestorIDs(c).clone();
+			cotopy.or(index.getDescendantIDs(c));
+			cotopy.set(classID);
+			Set<Long> distinct = new HashSet<Long>();
+			int[] minima = new int[sketchSize];
+			Arrays.fill(minima, Integer.MAX_VALUE);
+			for (int ID = cotopy.nextSetBit(0); ID >= 0; ID = cotopy.nextSetBit(ID + 1))
+			{
+				if (false == distinct.add(elements[ID]))
+				{
+					continue;
+				}
+				for (int i = 0; i < sketchSize; i++)
+				{
+					minima[i] = Math.min(minima[i], hash(elements[ID], i));
+				}
+			}
+			sketch = new Sketch(minima, distinct.size());
+			// Another thread might have been faster, both results are the same.
+			sketches.compareAndSet(classID, null, sketch);
+		}
+		return sketch;
+	}
+
+	/**
+	 * Estimates the fraction of the elements of cotopy a that also belong to
+	 * cotopy b. With the estimated Jaccard index J, the union of the cotopies
+	 * has (|a| + |b|) / (1 + J) elements, and the intersection J times as
+	 * many.
+	 */
+	static double estimateContainment(Sketch a, Sketch b)
+	{
+		int agreeing = 0;
+		for (int i = 0; i < a.minima.length; i++)
+		{
+			if (a.minima[i] == b.minima[i])
+			{
+				agreeing++;
+			}
+		}
+		double jaccard = ((double)agreeing) / a.minima.length;
+		double intersection = (jaccard * (a.size + b.size)) / (1 + jaccard);
+		return Math.min(1, (intersection / a.size));
+	}
+}
@@ -17,6 +17,10 @@
  */
 package de.uni_rostock.goodod.owl.comparison;
 
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import org.semanticweb.owlapi.model.IRI;
@@ -25,17 +29,52 @@ import org.semanticweb.owlapi.model.OWLClass;
 import org.semanticweb.owlapi.model.OWLEntity;
 import org.semanticweb.owlapi.model.OWLOntology;
 
+import de.uni_rostock.goodod.owl.ClassLookupIndex;
+import de.uni_rostock.goodod.owl.OntologyCache;
+
 /**
  * @author Niels Grewe
  *
  */
-public class DefaultComparatorDelegate implements ComparatorDelegate {
+public class DefaultComparatorDelegate implements KeyedComparatorDelegate {
 
 	private final boolean includeImports;
+	private final OntologyCache cache;
+	private final Map<OWLOntology,ClassLookupIndex> lookupIndexes;
 	
 	public DefaultComparatorDelegate(boolean includeImp)
+	{
+		this(includeImp, null);
+	}
+	
+	/**
+	 * @param includeImp Whether to search the imports closure.
+	 * @param theCache The cache to obtain lookup indexes for the ontologies
+	 * from. If null, the indexes are built for this delegate only.
+	 */
+	public DefaultComparatorDelegate(boolean includeImp, OntologyCache theCache)
 	{
 		includeImports = includeImp;
+		cache = theCache;
+		lookupIndexes = new IdentityHashMap<OWLOntology,ClassLookupIndex>(2);
+	}
+	
+	private synchronized ClassLookupIndex getLookupIndex(OWLOntology o)
+	{
+		ClassLookupIndex index = lookupIndexes.get(o);
+		if (null == index)
+		{
+			if (null == cache)
+			{
+				index = new ClassLookupIndex(o, includeImports);
+			}
+			else
+			{
+				index = cache.getClassLookupIndex(o, includeImports);
+			}
+			lookupIndexes.put(o, index);
+		}
+		return index;
 	}
 	
 	/* (non-Javadoc)
@@ -59,18 +98,9 @@ public class DefaultComparatorDelegate implements ComparatorDelegate {
 		
 		/* 
 		 * If we got thus far, we have no exact match and need to search for a
-		 * fragment-wise on.
+		 * fragment-wise or label-wise one.
 		 */
-		Set<OWLClass>classes = searchOntology.getClassesInSignature(includeImports);
-		for (OWLClass c : classes)
-		{
-			if (classesConsideredEqual(referenceClass, referenceOntology, c, searchOntology))
-			{
-				return c;
-			}
-		}
-		
-		return null;
+		return getLookupIndex(searchOntology).findClass(referenceClass, referenceOntology);
 	}
 
 	/* (non-Javadoc)
@@ -120,4 +150,28 @@ public class DefaultComparatorDelegate implements ComparatorDelegate {
 		}
 		return false;
 	}
+	
+	/**
+	 * Classes are considered equal if they agree in IRI, fragment or one of
+	 * their labels, so each of these makes up a key.
+	 */
+	public Set<Object> getEquivalenceKeys(OWLClass c, OWLOntology ontology)
+	{
+		Set<Object> keys = new HashSet<Object>();
+		IRI theIRI = c.getIRI();
+		keys.add(new SimpleImmutableEntry<String,Object>("IRI", theIRI));
+		String fragment = theIRI.getFragment();
+		if (null != fragment)
+		{
+			keys.add(new SimpleImmutableEntry<String,Object>("fragment", fragment));
+		}
+		for (OWLAnnotationAssertionAxiom ax : ontology.getAnnotationAssertionAxioms(theIRI))
+		{
+			if (ax.getProperty().isLabel())
+			{
+				keys.add(new SimpleImmutableEntry<String,Object>("label", ax.getValue()));
+			}
+		}
+		return keys;
+	}
 }
@@ -0,0 +1,190 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 17.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.owl.comparison;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.semanticweb.owlapi.model.*;
+
+import de.uni_rostock.goodod.owl.ClassHierarchyIndex;
+import de.uni_rostock.goodod.owl.KeyInterner;
+
+/**
+ * Integer based view of the classes of an ontology for the semantic cotopy
+ * comparison. Classes are identified by their IDs in the class hierarchy
+ * index, equivalence keys by the IDs the (run-wide) key interner assigns to
+ * them. Cotopies are bitsets over the class IDs, so the number of common
+ * classes of two extracts boils down to setting the bits of the matching
+ * classes and counting the bits in the intersection.
+ *
+ * Instances are thread-safe. Cotopies are computed on demand and kept for the
+ * lifetime of the table.
+ *
+ * @author Niels Grewe
+ *
+ */
+class EquivalenceKeyTable {
+
+	private final ClassHierarchyIndex index;
+	private final int wordCount;
+	private final int[][] keysOfClass;
+	private final int[] keyIDs;
+	private final int[][] classesWithKey;
+	private final AtomicReferenceArray<long[]> cotopies;
+
+	/**
+	 * @param ontology The ontology the classes stem from.
+	 * @param theIndex The class hierarchy of the ontology.
+	 * @param delegate The delegate providing the equivalence keys.
+	 * @param interner The interner assigning the key IDs.
+	 */
+	EquivalenceKeyTable(OWLOntology ontology, ClassHierarchyIndex theIndex, KeyedComparatorDelegate delegate, KeyInterner interner)
+	{
+		index = theIndex;
+		int classCount = index.getClassCount();
+		wordCount = ((classCount + 63) >>> 6);
+		keysOfClass = new int[classCount][];
+		// Sorted, so that the postings can be found by binary search.
+		Map<Integer,List<Integer>> postings = new TreeMap<Integer,List<Integer>>();
+		for (int classID = 0; classID < classCount; classID++)
+		{
+			Set<Object> keys = delegate.getEquivalenceKeys(index.getClass(classID), ontology);
+			int[] IDs = new int[keys.size()];
+			int i = 0;
+			for (Object key : keys)
+			{
+				int keyID = interner.intern(key);
+				IDs[i++] = keyID;
+				List<Integer> classes = postings.get(keyID);
+				if (null == classes)
+				{
+					classes = new ArrayList<Integer>(1);
+					postings.put(keyID, classes);
+				}
+				classes.add(classID);
+			}
+			keysOfClass[classID] = IDs;
+		}
+		keyIDs = new int[postings.size()];
+		classesWithKey = new int[postings.size()][];
+		int i = 0;
+		for (Map.Entry<Integer,List<Integer>> e : postings.entrySet())
+		{
+			keyIDs[i] = e.getKey();
+			List<Integer> classes = e.getValue();
+			int[] classIDs = new int[classes.size()];
+			for (int j = 0; j < classIDs.length; j++)
+			{
+				classIDs[j] = classes.get(j);
+			}
+			classesWithKey[i++] = classIDs;
+		}
+		cotopies = new AtomicReferenceArray<long[]>(classCount);
+	}
+
+	/**
+	 * @return The ID of the class or -1 if it is not part of the table.
+	 */
+	int getID(OWLClass c)
+	{
+		return index.getID(c);
+	}
+
+	/**
+	 * Returns the semantic cotopy (the class, its sub- and superclasses) of
+	 * the class with the given ID as a bitset. The returned array must not be
+	 * modified.
+	 */
+	long[] getCotopy(int classID)
+	{
+		long[] cotopy = cotopies.get(classID);
+		if (null == cotopy)
+		{
+			cotopy = new long[wordCount];
+			OWLClass c = index.getClass(classID);
+			setBits(cotopy, index.getAncestorIDs(c));
+			setBits(cotopy, index.getDescendantIDs(c));
+			cotopy[classID >>> 6] |= (1L << classID);
+			// Another thread might have been faster, both results are the same.
+			cotopies.compareAndSet(classID, null, cotopy);
+		}
+		return cotopy;
+	}
+
+	private static void setBits(long[] words, BitSet bits)
+	{
+		for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1))
+		{
+			words[i >>> 6] |= (1L << i);
+		}
+	}
+
+	/**
+	 * Computes the taxonomic precision of a class from this table against a
+	 * class from another one: The fraction of the classes in the cotopy of
+	 * the first class that share an equivalence key with one of the classes
+	 * in the cotopy of the second class.
+	 *
+	 * @param classID The ID of the class in this table.
+	 * @param other The table for the other ontology.
+	 * @param otherClassID The ID of the class in the other table.
+	 * @return The taxonomic precision.
+	 */
+	double getTaxonomicPrecision(int classID, EquivalenceKeyTable other, int otherClassID)
+	{
+		long[] cotopy = getCotopy(classID);
+		long[] otherCotopy = other.getCotopy(otherClassID);
+		// All classes of ours that share a key with the other extract.
+		long[] matching = new long[wordCount];
+		for (int w = 0; w < otherCotopy.length; w++)
+		{
+			long word = otherCotopy[w];
+			while (0 != word)
+			{
+				int otherID = ((w << 6) + Long.numberOfTrailingZeros(word));
+				word &= (word - 1);
+				for (int keyID : other.keysOfClass[otherID])
+				{
+					int position = Arrays.binarySearch(keyIDs, keyID);
+					if (position >= 0)
+					{
+						for (int ID : classesWithKey[position])
+						{
+							matching[ID >>> 6] |= (1L << ID);
+						}
+					}
+				}
+			}
+		}
+		int common = 0;
+		int size = 0;
+		for (int w = 0; w < wordCount; w++)
+		{
+			common += Long.bitCount(cotopy[w] & matching[w]);
+			size += Long.bitCount(cotopy[w]);
+		}
+		return (((double)common)/(double)size);
+	}
+}
@@ -0,0 +1,46 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 14.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.owl.comparison;
+
+import java.util.Set;
+
+import org.semanticweb.owlapi.model.*;
+
+/**
+ * @author Niels Grewe
+ *
+ * Comparator delegates that can describe their notion of equality by keys.
+ * Comparators use the keys to match classes with hash lookups instead of
+ * calling classesConsideredEqual() for every combination of classes.
+ */
+public interface KeyedComparatorDelegate extends ComparatorDelegate {
+
+	/**
+	 * Computes the equivalence keys of a class. Two classes must be
+	 * considered equal by classesConsideredEqual() exactly if they share at
+	 * least one key. Keys can be arbitrary objects with proper equals() and
+	 * hashCode() implementations. They must only depend on the class and the
+	 * ontology, since comparators share them between all delegates of the
+	 * same class.
+	 *
+	 * @param c The class.
+	 * @param ontology The ontology from which the class stems.
+	 * @return The keys of the class.
+	 */
+	public Set<Object> getEquivalenceKeys(OWLClass c, OWLOntology ontology);
+}
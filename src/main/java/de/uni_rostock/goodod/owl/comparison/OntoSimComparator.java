@@ -21,28 +21,36 @@ package de.uni_rostock.goodod.owl.comparison;
 
 
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntology;
 
 import de.uni_rostock.goodod.owl.*;
 
 
 
 import fr.inrialpes.exmo.ontowrap.HeavyLoadedOntology;
+import fr.inrialpes.exmo.ontowrap.OntowrapException;
 
 import fr.inrialpes.exmo.ontowrap.owlapi30.OWLAPI3OntologyFactory;
 
 /**
  * Abstract superclass of classes implementing similarity measures from OntoSim.
+ * The OntoWrap representations of the ontologies are attached to the
+ * ontologies in the ontology cache, so every ontology is only wrapped (and
+ * indexed by OntoWrap) once, no matter how many pairs it takes part in.
  * @author Niels Grewe <niels.grewe@uni-rostock.de>
  *
  */
 public abstract class OntoSimComparator implements Comparator {
 
 	static private OWLAPI3OntologyFactory ontoWrapFactory = new OWLAPI3OntologyFactory();
+	static private final String ontoWrapAttachmentKey = "OWLAPI3Ontology";
 	protected static Log logger = LogFactory.getLog(OntoSimComparator.class);
 	protected OntologyPair pair;
 	protected HeavyLoadedOntology<?> ontologyA;
@@ -61,8 +69,64 @@ public abstract class OntoSimComparator implements Comparator {
 		super();
 		pair = thePair;
 		includeImports = doIncludeImports;
-		ontologyA = ontoWrapFactory.newOntology(pair.getOntologyA());
-		ontologyB = ontoWrapFactory.newOntology(pair.getOntologyB());
+		ontologyA = wrapOntology(pair.getOntologyA());
+		ontologyB = wrapOntology(pair.getOntologyB());
+	}
+	
+	/**
+	 * Returns the OntoWrap representation of an ontology used by the
+	 * measure. The default implementation wraps the OWLAPI ontology. Since
+	 * this is called from the constructor, overriding implementations must
+	 * not depend on state of the subclass.
+	 * 
+	 * @param ont The ontology.
+	 * @return The OntoWrap ontology, shared with other comparisons.
+	 * @throws ExecutionException If the ontology could not be wrapped.
+	 * @throws InterruptedException
+	 */
+	protected HeavyLoadedOntology<?> wrapOntology(final OWLOntology ont) throws ExecutionException, InterruptedException
+	{
+		return getSharedOntology(ont, ontoWrapAttachmentKey, new Callable<HeavyLoadedOntology<?>>()
+		{
+			public HeavyLoadedOntology<?> call() throws OntowrapException
+			{
+				return ontoWrapFactory.newOntology(ont);
+			}
+		});
+	}
+	
+	/**
+	 * Returns an OntoWrap ontology that is built only once for every
+	 * ontology held by the ontology cache and reused by all pairs the
+	 * ontology takes part in. If several comparisons ask for it at once, all
+	 * but the first wait for it to be built.
+	 * 
+	 * @param ont The ontology.
+	 * @param key The key under which the OntoWrap ontology is attached to
+	 * the ontology.
+	 * @param builder Creates the OntoWrap ontology if it doesn't exist yet.
+	 * @return The shared OntoWrap ontology.
+	 * @throws ExecutionException If the builder failed.
+	 * @throws InterruptedException
+	 */
+	protected HeavyLoadedOntology<?> getSharedOntology(OWLOntology ont, Object key, Callable<HeavyLoadedOntology<?>> builder) throws ExecutionException, InterruptedException
+	{
+		OntologyCache cache = pair.getOntologyCache();
+		@SuppressWarnings("unchecked")
+		FutureTask<HeavyLoadedOntology<?>> future = (FutureTask<HeavyLoadedOntology<?>>)cache.getAttachment(ont, key);
+		if (null == future)
+		{
+			FutureTask<HeavyLoadedOntology<?>> newFuture = new FutureTask<HeavyLoadedOntology<?>>(builder);
+			@SuppressWarnings("unchecked")
+			FutureTask<HeavyLoadedOntology<?>> attached = (FutureTask<HeavyLoadedOntology<?>>)cache.attach(ont, key, newFuture);
+			future = attached;
+			if (newFuture == future)
+			{
+				// We won the race, so we build it in this thread.
+				future.run();
+			}
+		}
+		return future.get();
 	}
 	
 	public ComparisonResult compare(Set<IRI>iriSet) throws ExecutionException, InterruptedException
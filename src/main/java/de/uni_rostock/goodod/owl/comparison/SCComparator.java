@@ -17,18 +17,28 @@
  */
 package de.uni_rostock.goodod.owl.comparison;
 
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
-import org.apache.log4j.Logger;
 import org.semanticweb.owlapi.model.*;
 
+import de.uni_rostock.goodod.owl.ClassHierarchyIndex;
 import de.uni_rostock.goodod.owl.OntologyCache;
 import de.uni_rostock.goodod.owl.OntologyPair;
-import de.uni_rostock.goodod.owl.SubClassCollector;
-import de.uni_rostock.goodod.owl.SuperClassCollector;
 
 /**
  * Comparator for ontology pairs using semantic cotopy (cf. Dellschaft/Staab
@@ -36,11 +46,28 @@ import de.uni_rostock.goodod.owl.SuperClassCollector;
  * @author Niels Grewe <niels.grewe@uni-rostock.de>
  *
  */
-public class SCComparator implements Comparator {
+public class SCComparator implements SymmetricComparator {
+
+	/**
+	 * Number of classes handled by one task when a comparison is split up.
+	 * The chunks don't depend on the number of threads, so the partial sums
+	 * are always added up in the same way.
+	 */
+	private static final int CHUNK_SIZE = 64;
+	/**
+	 * Comparisons with fewer classes are not split up.
+	 */
+	private static final int PARALLEL_THRESHOLD = (4 * CHUNK_SIZE);
+	private static int workerCount = Runtime.getRuntime().availableProcessors();
+	private static ExecutorService classWorkers;
 
 	private OntologyPair pair;
 	boolean includeImports;
 	protected ComparatorDelegate delegate;
+	private final Map<OWLOntology,ClassHierarchyIndex> hierarchyIndexes;
+	private Map<OWLOntology,Map<OWLClass,Set<Object>>> equivalenceKeys;
+	private Map<PrecisionKey,Double> precisions;
+	private final Map<OWLOntology,EquivalenceKeyTable> keyTables;
 	
 	/**
 	 * 
@@ -53,15 +80,97 @@ public class SCComparator implements Comparator {
 		super();
 		pair = thePair;
 		includeImports = doIncludeImports;
-		delegate = new DefaultComparatorDelegate(includeImports);
+		delegate = new DefaultComparatorDelegate(includeImports, pair.getOntologyCache());
+		hierarchyIndexes = new IdentityHashMap<OWLOntology,ClassHierarchyIndex>(2);
+		equivalenceKeys = new IdentityHashMap<OWLOntology,Map<OWLClass,Set<Object>>>(2);
+		keyTables = new IdentityHashMap<OWLOntology,EquivalenceKeyTable>(2);
 	}
 	
 	public void setDelegate(ComparatorDelegate del)
 	{
 		if (null != del)
 		{
-			delegate = del;
+			synchronized (equivalenceKeys)
+			{
+				delegate = del;
+				equivalenceKeys.clear();
+			}
+			synchronized (keyTables)
+			{
+				keyTables.clear();
+			}
+		}
+	}
+	
+	/**
+	 * Sets the number of threads that work on the classes of a single
+	 * comparison. Comparisons are not split up if the count is less than 2.
+	 */
+	public static synchronized void setWorkerCount(int count)
+	{
+		if ((count != workerCount) && (null != classWorkers))
+		{
+			// Running comparisons still finish with the old pool.
+			classWorkers.shutdown();
+			classWorkers = null;
 		}
+		workerCount = count;
+	}
+	
+	private static synchronized ExecutorService getClassWorkers()
+	{
+		if ((null == classWorkers) && (workerCount > 1))
+		{
+			classWorkers = Executors.newFixedThreadPool(workerCount, new ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "SCComparator worker");
+					// The pool is never shut down explicitly.
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return classWorkers;
+	}
+	
+	/**
+	 * Creates a comparator of the same kind for another pair.
+	 * Subclasses need to override this.
+	 */
+	protected SCComparator createComparator(OntologyPair thePair)
+	{
+		return new SCComparator(thePair, includeImports);
+	}
+	
+	/**
+	 * Sets up a comparator for the inverse pair that shares the delegate and
+	 * all memoized state with the receiver. Both directions of a comparison
+	 * need the taxonomic precisions of the same class pairs (precision of A
+	 * vs. B is recall of B vs. A), so the second direction mostly consists of
+	 * lookups.
+	 */
+	private SCComparator getInverseComparator()
+	{
+		SCComparator inverse = createComparator(pair.getInversePair());
+		inverse.delegate = delegate;
+		inverse.equivalenceKeys = equivalenceKeys;
+		precisions = new ConcurrentHashMap<PrecisionKey,Double>();
+		inverse.precisions = precisions;
+		return inverse;
+	}
+	
+	public FMeasureComparisonResult[] compareBothWays() throws InterruptedException, ExecutionException
+	{
+		SCComparator inverse = getInverseComparator();
+		return new FMeasureComparisonResult[] { compare(), inverse.compare() };
+	}
+	
+	public FMeasureComparisonResult[] compareBothWays(Set<IRI> classIRIs) throws InterruptedException, ExecutionException
+	{
+		SCComparator inverse = getInverseComparator();
+		return new FMeasureComparisonResult[] { compare(classIRIs), inverse.compare(classIRIs) };
 	}
 	
 	/* (non-Javadoc)
@@ -127,21 +236,118 @@ public class SCComparator implements Comparator {
 	 * @throws InterruptedException 
 	 */
 	protected FMeasureComparisonResult compareClasses(Set<OWLClass>classes, Set<IRI> notFound) throws InterruptedException, ExecutionException
+	{
+		OWLOntology ontologyA = pair.getOntologyA();
+		OWLOntology ontologyB = pair.getOntologyB();
+		/*
+		 * The classes from A come first, followed by the classes from B that
+		 * were requested but not found in A.
+		 */
+		List<OWLClass> work = new ArrayList<OWLClass>(classes);
+		int foundCount = work.size();
+		for (OWLClass classB : ontologyB.getClassesInSignature(includeImports))
+		{
+			if (notFound.contains(classB.getIRI()))
+			{
+				work.add(classB);
+			}
+		}
+		ExecutorService workers = getClassWorkers();
+		double[] totals;
+		if ((null == workers) || (work.size() < PARALLEL_THRESHOLD))
+		{
+			totals = accumulate(work, 0, work.size(), foundCount, ontologyA, ontologyB);
+		}
+		else
+		{
+			totals = accumulateInParallel(workers, work, foundCount, ontologyA, ontologyB);
+		}
+		double precision = totals[1] / totals[0];
+		double recall = totals[2] / totals[0];
+	
+		return new FMeasureComparisonResult(getComparisonMethod(), pair, precision, recall);
+		
+	}
+	
+	/**
+	 * Splits the classes into chunks of CHUNK_SIZE that are processed by the
+	 * worker threads. The calling thread takes care of the first chunk itself
+	 * and adds up the partial sums in the order of the chunks.
+	 */
+	private double[] accumulateInParallel(ExecutorService workers, final List<OWLClass> work, final int foundCount,
+	  final OWLOntology ontologyA, final OWLOntology ontologyB) throws InterruptedException, ExecutionException
+	{
+		List<Future<double[]>> partials = new ArrayList<Future<double[]>>();
+		try
+		{
+			for (int start = CHUNK_SIZE; start < work.size(); start += CHUNK_SIZE)
+			{
+				final int from = start;
+				final int to = Math.min(work.size(), (start + CHUNK_SIZE));
+				partials.add(workers.submit(new Callable<double[]>()
+				{
+					public double[] call()
+					{
+						return accumulate(work, from, to, foundCount, ontologyA, ontologyB);
+					}
+				}));
+			}
+			double[] totals = accumulate(work, 0, CHUNK_SIZE, foundCount, ontologyA, ontologyB);
+			for (Future<double[]> partial : partials)
+			{
+				double[] sums = partial.get();
+				for (int i = 0; i < totals.length; i++)
+				{
+					totals[i] += sums[i];
+				}
+			}
+			return totals;
+		}
+		finally
+		{
+			// Only has an effect if we bail out early.
+			for (Future<double[]> partial : partials)
+			{
+				partial.cancel(true);
+			}
+		}
+	}
+	
+	/**
+	 * Sums up the weights, precisions and recalls for a range of classes.
+	 *
+	 * @param work The classes.
+	 * @param from The index of the first class to process.
+	 * @param to The index after the last class to process.
+	 * @param foundCount The number of classes at the beginning of work that
+	 * come from ontology A.
+	 * @return The overall weight, precision and recall.
+	 */
+	private double[] accumulate(List<OWLClass> work, int from, int to, int foundCount, OWLOntology ontologyA, OWLOntology ontologyB)
 	{
 		double overallWeight = 0;
 		// Classes that are not available in the computed ontology by definition achieve maximum precision
 		// because they don't return any irrelevant concept.
 		double precisionAccumulator = 0;
 		double recallAccumulator = 0;
-		OWLOntology ontologyA = pair.getOntologyA();
-		OWLOntology ontologyB = pair.getOntologyB();
-		for (OWLClass classA : classes)
+		for (int i = from; i < to; i++)
 		{
-			OWLClass classB = delegate.findClass(classA, ontologyA, ontologyB);
+			OWLClass classA;
+			OWLClass classB;
+			if (i < foundCount)
+			{
+				classA = work.get(i);
+				classB = delegate.findClass(classA, ontologyA, ontologyB);
+			}
+			else
+			{
+				classB = work.get(i);
+				classA = delegate.findClass(classB, ontologyA, ontologyB);
+			}
 			overallWeight += delegate.getClassWeight(classB, ontologyA, ontologyB);
-			double newPrec = getTaxonomicPrecision(classA, classB, ontologyA, pair.getOntologyB());
+			double newPrec = memoizedTaxonomicPrecision(classA, classB, ontologyA, ontologyB);
 			// Lucky fact: precision of A vs. B is the same thing as recall B vs. A.
-			double newRec= getTaxonomicPrecision(classB, classA, ontologyB, ontologyA);
+			double newRec= memoizedTaxonomicPrecision(classB, classA, ontologyB, ontologyA);
 			if (notNaN(newPrec))
 			{
 				precisionAccumulator += newPrec;
@@ -151,32 +357,7 @@ public class SCComparator implements Comparator {
 				recallAccumulator += newRec;
 			}
 		}
-		for (OWLClass classB : pair.getOntologyB().getClassesInSignature(includeImports))
-		{
-			if (notFound.contains(classB.getIRI()))
-			{
-				OWLClass classA = delegate.findClass(classB, ontologyA, ontologyB);
-				overallWeight += delegate.getClassWeight(classB, ontologyA, ontologyB);
-				double newPrec = getTaxonomicPrecision(classA, classB, ontologyA, ontologyB);
-				// Lucky fact: precision of A vs. B is the same thing as recall B vs. A.
-				double newRec= getTaxonomicPrecision(classB, classA, ontologyB, ontologyA);
-				if (notNaN(newPrec))
-				{
-					precisionAccumulator += newPrec;
-				}
-				if (notNaN(newRec))
-				{
-					recallAccumulator += newRec;
-				}
-
-			}	
-
-		}
-		double precision = precisionAccumulator / overallWeight;
-		double recall = recallAccumulator / overallWeight;
-	
-		return new FMeasureComparisonResult(getComparisonMethod(), pair, precision, recall);
-		
+		return new double[] { overallWeight, precisionAccumulator, recallAccumulator };
 	}
 	
 	protected String getComparisonMethod()
@@ -184,32 +365,36 @@ public class SCComparator implements Comparator {
 		return "Semantic Cotopy Comparison";
 	}
 	
-	protected Set<OWLClass>transitiveSubClasses(OWLClass c, OWLOntology o)
+	/**
+	 * @return The cache the ontologies of the pair stem from.
+	 */
+	protected OntologyCache getOntologyCache()
 	{
-		Set<OWLOntology> ontologies = null;
-		if (includeImports)
-		{
-			ontologies = o.getImportsClosure();
-		}
-		else
+		return pair.getOntologyCache();
+	}
+	
+	/**
+	 * Returns the precomputed class hierarchy for one of the ontologies.
+	 */
+	protected synchronized ClassHierarchyIndex getHierarchyIndex(OWLOntology o)
+	{
+		ClassHierarchyIndex index = hierarchyIndexes.get(o);
+		if (null == index)
 		{
-			ontologies = Collections.singleton(o);
+			index = pair.getOntologyCache().getClassHierarchyIndex(o, includeImports);
+			hierarchyIndexes.put(o, index);
 		}
-		return new SubClassCollector(c, ontologies).collect();
+		return index;
+	}
+	
+	protected Set<OWLClass>transitiveSubClasses(OWLClass c, OWLOntology o)
+	{
+		return getHierarchyIndex(o).getDescendants(c);
 	}
 	
 	protected Set<OWLClass>transitiveSuperClasses(OWLClass c, OWLOntology o)
 	{
-		Set<OWLOntology> ontologies = null;
-		if (includeImports)
-		{
-			ontologies = o.getImportsClosure();
-		}
-		else
-		{
-			ontologies = Collections.singleton(o);
-		}
-		return new SuperClassCollector(c, ontologies).collect();
+		return getHierarchyIndex(o).getAncestors(c);
 	}
 	
 	/**
@@ -218,51 +403,166 @@ public class SCComparator implements Comparator {
 	 * 
 	 * @param o The ontology from which to get the classes.
 	 * @param c The class for which to fetch the extract.
-	 * @return The set of all sub- and superclasses of the given class.
+	 * @return The set of all sub- and superclasses of the given class. It
+	 * must not be modified.
 	 */
 	private Set<OWLClass> semanticCotopy(OWLClass c, OWLOntology o)
 	{
-		Set<OWLClass> extract = new HashSet<OWLClass>();
-		
-		extract.addAll(transitiveSuperClasses(c, o));
-		extract.addAll(transitiveSubClasses(c, o));
-		
 		/*
-		 *  The class itself belongs to the extract as well and prevents us
-		 *  from doing divisions by zero.
+		 * The cotopies don't change while the ontologies are cached, so they
+		 * are shared between the comparisons of all pairs.
 		 */
-		extract.add(c);
-		return extract;
+		return pair.getOntologyCache().getCotopyCache().getSemanticCotopy(c, getHierarchyIndex(o));
 	}
 	
 
 	
 	
 	
-	protected Set<OWLClass> commonClasses(Set<OWLClass> extractA, Set<OWLClass> extractB)
+	/**
+	 * Finds the classes from extractA that have an equal class in extractB.
+	 *
+	 * @param extractA Classes from ontA.
+	 * @param ontA The ontology the classes in extractA are taken from.
+	 * @param extractB Classes from ontB.
+	 * @param ontB The ontology the classes in extractB are taken from.
+	 */
+	protected Set<OWLClass> commonClasses(Set<OWLClass> extractA, OWLOntology ontA, Set<OWLClass> extractB, OWLOntology ontB)
 	{
+		if (delegate instanceof KeyedComparatorDelegate)
+		{
+			return commonClassesByKeys(extractA, ontA, extractB, ontB);
+		}
 		Set<OWLClass> commonClasses = new HashSet<OWLClass>();
-		// TODO: Nested loop. There is probably a smarter way.
+		// Nested loop, we can only do better if the delegate provides keys.
 		for (OWLClass classA : extractA)
 		{
 			for (OWLClass classB : extractB)
 			{
-				try
+				if (delegate.classesConsideredEqual(classA, ontA, classB, ontB))
 				{
-					if (delegate.classesConsideredEqual(classA,pair.getOntologyA(),classB, pair.getOntologyB()))
-					{
-						commonClasses.add(classA);
-					}
+					commonClasses.add(classA);
 				}
-				catch (Throwable e)
+			}
+			
+		}
+		return commonClasses;
+	}
+	
+	/**
+	 * Finds the common classes by collecting the equivalence keys of the
+	 * classes from extractB and probing them with the keys of the classes
+	 * from extractA.
+	 */
+	private Set<OWLClass> commonClassesByKeys(Set<OWLClass> extractA, OWLOntology ontologyA, Set<OWLClass> extractB, OWLOntology ontologyB)
+	{
+		Set<OWLClass> commonClasses = new HashSet<OWLClass>();
+		Set<Object> keysB = new HashSet<Object>();
+		for (OWLClass classB : extractB)
+		{
+			keysB.addAll(getEquivalenceKeys(classB, ontologyB));
+		}
+		for (OWLClass classA : extractA)
+		{
+			for (Object key : getEquivalenceKeys(classA, ontologyA))
+			{
+				if (keysB.contains(key))
 				{
-					Logger.getLogger(this.getClass()).error("Could not get ontologies.", e);
+					commonClasses.add(classA);
+					break;
 				}
 			}
-			
 		}
 		return commonClasses;
 	}
+	
+	/**
+	 * Returns the equivalence keys the delegate provides for the class,
+	 * computing them only once per comparison.
+	 */
+	protected Set<Object> getEquivalenceKeys(OWLClass c, OWLOntology o)
+	{
+		synchronized (equivalenceKeys)
+		{
+			Map<OWLClass,Set<Object>> keysForOntology = equivalenceKeys.get(o);
+			if (null == keysForOntology)
+			{
+				keysForOntology = new HashMap<OWLClass,Set<Object>>();
+				equivalenceKeys.put(o, keysForOntology);
+			}
+			Set<Object> keys = keysForOntology.get(c);
+			if (null == keys)
+			{
+				keys = ((KeyedComparatorDelegate)delegate).getEquivalenceKeys(c, o);
+				keysForOntology.put(c, keys);
+			}
+			return keys;
+		}
+	}
+	
+	/**
+	 * Returns the taxonomic precision, reusing the value computed by the
+	 * comparator for the other direction if both directions are compared.
+	 */
+	private double memoizedTaxonomicPrecision(OWLClass classA, OWLClass classB, OWLOntology ontA, OWLOntology ontB)
+	{
+		if (null == precisions)
+		{
+			return getTaxonomicPrecision(classA, classB, ontA, ontB);
+		}
+		PrecisionKey key = new PrecisionKey(classA, classB, ontA);
+		Double precision = precisions.get(key);
+		if (null == precision)
+		{
+			precision = getTaxonomicPrecision(classA, classB, ontA, ontB);
+			precisions.put(key, precision);
+		}
+		return precision;
+	}
+	
+	/**
+	 * Identifies a taxonomic precision computation. Since a comparator only
+	 * deals with two ontologies, the ontology of the first class determines
+	 * the direction.
+	 */
+	private static class PrecisionKey
+	{
+		private final OWLClass classA;
+		private final OWLClass classB;
+		private final OWLOntology ontologyA;
+		
+		PrecisionKey(OWLClass theClassA, OWLClass theClassB, OWLOntology theOntologyA)
+		{
+			classA = theClassA;
+			classB = theClassB;
+			ontologyA = theOntologyA;
+		}
+		
+		@Override
+		public boolean equals(Object other)
+		{
+			if (false == (other instanceof PrecisionKey))
+			{
+				return false;
+			}
+			PrecisionKey key = (PrecisionKey)other;
+			// Ontologies are compared by identity, their equals() only looks at the ID.
+			return ((ontologyA == key.ontologyA) && equal(classA, key.classA) && equal(classB, key.classB));
+		}
+		
+		private static boolean equal(Object a, Object b)
+		{
+			return (null == a) ? (null == b) : a.equals(b);
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			int hash = System.identityHashCode(ontologyA);
+			hash = (31 * hash) + ((null == classA) ? 0 : classA.hashCode());
+			return (31 * hash) + ((null == classB) ? 0 : classB.hashCode());
+		}
+	}
 
 
 	protected double getTaxonomicPrecision(OWLClass classA, OWLClass classB, OWLOntology ontA, OWLOntology ontB)
@@ -270,6 +570,38 @@ public class SCComparator implements Comparator {
 		return computeTaxonomicPrecision(classA, classB, ontA, ontB);
 	}
 	
+	/**
+	 * Returns the integer based view of the ontology for the current
+	 * delegate. The tables only depend on the ontology and the kind of
+	 * delegate, so they are shared through the ontology cache.
+	 *
+	 * @return The table or null if the delegate doesn't provide keys.
+	 */
+	private EquivalenceKeyTable getKeyTable(OWLOntology o)
+	{
+		synchronized (keyTables)
+		{
+			if (false == (delegate instanceof KeyedComparatorDelegate))
+			{
+				return null;
+			}
+			EquivalenceKeyTable table = keyTables.get(o);
+			if (null == table)
+			{
+				OntologyCache cache = pair.getOntologyCache();
+				Object key = new SimpleImmutableEntry<Class<?>,Boolean>(delegate.getClass(), includeImports);
+				table = (EquivalenceKeyTable)cache.getAttachment(o, key);
+				if (null == table)
+				{
+					table = new EquivalenceKeyTable(o, getHierarchyIndex(o), (KeyedComparatorDelegate)delegate, cache.getKeyInterner());
+					table = (EquivalenceKeyTable)cache.attach(o, key, table);
+				}
+				keyTables.put(o, table);
+			}
+			return table;
+		}
+	}
+	
 	protected double computeTaxonomicPrecision(OWLClass classA, OWLClass classB, OWLOntology ontA, OWLOntology ontB)
 	{
 		if ((null == classA) || (null == classB))
@@ -277,9 +609,21 @@ public class SCComparator implements Comparator {
 			//If one of the classes is null, we just return zero.
 			return 0;
 		}
+		EquivalenceKeyTable tableA = getKeyTable(ontA);
+		if (null != tableA)
+		{
+			EquivalenceKeyTable tableB = getKeyTable(ontB);
+			int IDA = tableA.getID(classA);
+			int IDB = tableB.getID(classB);
+			if ((-1 != IDA) && (-1 != IDB))
+			{
+				// Same result as below, without building any sets.
+				return tableA.getTaxonomicPrecision(IDA, tableB, IDB);
+			}
+		}
 		Set<OWLClass> extractA = semanticCotopy(classA, ontA);
 		Set<OWLClass> extractB = semanticCotopy(classB, ontB);
-		Set<OWLClass> commonExtract = commonClasses(extractA,extractB);
+		Set<OWLClass> commonExtract = commonClasses(extractA, ontA, extractB, ontB);
 		
 
 		return (((double)commonExtract.size())/(double)extractA.size());
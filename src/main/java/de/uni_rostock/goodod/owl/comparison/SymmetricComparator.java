@@ -0,0 +1,50 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 15.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.owl.comparison;
+
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import org.semanticweb.owlapi.model.IRI;
+
+/**
+ * Comparators that can compare the ontologies of a pair in both directions at
+ * once, sharing the work the two directions have in common.
+ *
+ * @author Niels Grewe
+ *
+ */
+public interface SymmetricComparator extends Comparator {
+
+	/**
+	 * Performs a comparison over the entirety of the two ontologies in both
+	 * directions.
+	 *
+	 * @return The results for A against B and for B against A, in that order.
+	 */
+	ComparisonResult[] compareBothWays() throws InterruptedException, ExecutionException;
+
+	/**
+	 * Performs a comparison over the named set of class IRIs in both
+	 * directions.
+	 *
+	 * @param classIRIs The class IRIs to consider for the comparison.
+	 * @return The results for A against B and for B against A, in that order.
+	 */
+	ComparisonResult[] compareBothWays(Set<IRI> classIRIs) throws InterruptedException, ExecutionException;
+}
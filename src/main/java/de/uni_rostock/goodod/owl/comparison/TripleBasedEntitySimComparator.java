@@ -18,24 +18,22 @@
 package de.uni_rostock.goodod.owl.comparison;
 
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 
 import org.apache.commons.configuration.SubnodeConfiguration;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.semanticweb.owlapi.io.RDFXMLOntologyFormat;
 import org.semanticweb.owlapi.model.*;
 
 import com.hp.hpl.jena.ontology.*;
-import com.hp.hpl.jena.rdf.model.ModelFactory;
 
 
+import de.uni_rostock.goodod.owl.JenaModelTranslator;
 import de.uni_rostock.goodod.owl.OntologyPair;
 import de.uni_rostock.goodod.tools.Configuration;
+import fr.inrialpes.exmo.ontowrap.HeavyLoadedOntology;
+import fr.inrialpes.exmo.ontowrap.OntowrapException;
 import fr.inrialpes.exmo.ontowrap.jena25.JENAOntologyFactory;
 import fr.inrialpes.exmo.ontosim.*;
 import fr.inrialpes.exmo.ontosim.entity.TripleBasedEntitySim;
@@ -48,7 +46,8 @@ import fr.inrialpes.exmo.ontosim.set.SetMeasure;
 /**
  * @author Niels Grewe
  * This class implements comparisons using triple based entity similarity.
- * It requires ontologies to be converted to the JENA API.
+ * It requires ontologies to be converted to the JENA API. The converted
+ * ontologies are attached to the ontologies in the ontology cache.
  */
 
 
@@ -60,6 +59,7 @@ public class TripleBasedEntitySimComparator extends OntoSimComparator {
 	 */
 	static private JENAOntologyFactory jenaOntoWrapFactory = new JENAOntologyFactory();
 	static private Log logger = LogFactory.getLog(TripleBasedEntitySimComparator.class);
+	static private final String jenaAttachmentKey = "JENAOntology";
 	private AggregationScheme aggregation;
 	public TripleBasedEntitySimComparator(OntologyPair p, boolean includeImports) throws Throwable
 	{
@@ -88,38 +88,34 @@ public class TripleBasedEntitySimComparator extends OntoSimComparator {
 				logger.warn("Unkown aggregation scheme '" + aggrScheme + "', using MaxCoupling.");	
 			}
 		}
-		// Get a serialization of the OWLAPI representation:
-		ByteArrayOutputStream sourceA = outputStreamForOntology(pair.getOntologyA());
-		ByteArrayOutputStream sourceB = outputStreamForOntology(pair.getOntologyB());
-		
-		// Also record their base URIs
-		String uriA = pair.getOntologyA().getOntologyID().getOntologyIRI().toString();
-		String uriB = pair.getOntologyB().getOntologyID().getOntologyIRI().toString();
-		
-		// Place them in a new input stream for JENA
-		ByteArrayInputStream destinationA = new ByteArrayInputStream(sourceA.toByteArray());
-		ByteArrayInputStream destinationB = new ByteArrayInputStream(sourceB.toByteArray());
-		
-		// Indicate to the JVM that it can collect the output streams, just in
-		// case it needs to GC while generating the JENA model.
-		sourceA = null;
-		sourceB = null;
+	}
 	
-		// Create two OWL OntModels for the JENA representation of our ontologies:
-		OntModel jenaA = ModelFactory.createOntologyModel( OntModelSpec.OWL_MEM, null );
-		OntModel jenaB = ModelFactory.createOntologyModel( OntModelSpec.OWL_MEM, null );
-		
-		// Deserialize the ontologies from the buffer:
-		jenaA.read(destinationA, uriA);
-		jenaB.read(destinationB, uriB);
-		
-		// Throw away the input streams:
-		destinationA = null;
-		destinationB = null;
-		
-		// place the new models in our ivars. (Note: They're HeavyLoadedOntology<OntModel> now)
-		ontologyA = jenaOntoWrapFactory.newOntology(jenaA);
-		ontologyB = jenaOntoWrapFactory.newOntology(jenaB);
+	/**
+	 * Returns the OntoWrap representation of the JENA model for the ontology.
+	 * The model is translated from the axioms of the ontology, which is
+	 * never modified in the process. This is important because the ontology is
+	 * shared with comparisons running in other threads.
+	 * 
+	 * @param ont The ontology
+	 * @return A HeavyLoadedOntology wrapping an OntModel for the ontology.
+	 * @throws ExecutionException If the model could not be built.
+	 * @throws InterruptedException
+	 */
+	@Override
+	protected HeavyLoadedOntology<?> wrapOntology(final OWLOntology ont) throws ExecutionException, InterruptedException
+	{
+		return getSharedOntology(ont, jenaAttachmentKey, new Callable<HeavyLoadedOntology<?>>()
+		{
+			public HeavyLoadedOntology<?> call() throws OntowrapException
+			{
+				/*
+				 * We translate the axioms directly instead of serializing
+				 * to RDF/XML and parsing the result again.
+				 */
+				OntModel model = JenaModelTranslator.translateToOntModel(ont);
+				return jenaOntoWrapFactory.newOntology(model);
+			}
+		});
 	}
 	
 	public SimilarityDissimilarityResult compare() throws ExecutionException, InterruptedException
@@ -176,31 +172,4 @@ public class TripleBasedEntitySimComparator extends OntoSimComparator {
 		return "Triple based entity similarity with " + agg + " aggregation";
 	}
 	
-	/**
-	 * Serialized an ontology to an in-memory RDF/XML representation. This is required for 
-	 * deserializing it using the JENA API.
-	 * @param ont The ontology to serialize
-	 * @return A byte array output stream containing an RDF/XML serialization of the ontology.
-	 * @throws OWLOntologyStorageException 
-	 * @throws IOException 
-	 */
-	private ByteArrayOutputStream outputStreamForOntology(OWLOntology ont) throws OWLOntologyStorageException, IOException
-	{
-		ByteArrayOutputStream stream = new ByteArrayOutputStream();
-		OWLOntologyManager manager = ont.getOWLOntologyManager();
-        // Since JENA might not play very well with imports, we remove them,
-		// although it is a tad suboptimal.
-		Set<OWLImportsDeclaration> imports = ont.getImportsDeclarations();
-        for (OWLImportsDeclaration i : imports)
-        {
-        	manager.applyChange(new RemoveImport(ont, i));
-        }
-        RDFXMLOntologyFormat fmt = new RDFXMLOntologyFormat();
-       
-        manager.saveOntology(ont, fmt, stream);
-        // Make sure all writes end up in the buffer:
-        stream.flush();
-        return stream;
-	}
-	
 }
@@ -21,6 +21,8 @@ import java.util.Set;
 import java.util.Map;
 import org.semanticweb.owlapi.model.*;
 
+import de.uni_rostock.goodod.owl.IRIPrefixMap;
+
 /**
  * @author Niels Grewe
  *
@@ -34,6 +36,12 @@ public class BasicImportingNormalizer extends BasicNormalizer {
 		config = conf;
 	}
 	
+	public BasicImportingNormalizer(OWLOntology ont, Map<IRI,IRI> importMap, IRIPrefixMap compiledMap, OWLOntologyLoaderConfiguration conf)
+	{
+		super(ont, importMap, compiledMap);
+		config = conf;
+	}
+	
 	public void normalize() throws OWLOntologyCreationException
 	{
 		super.normalize();
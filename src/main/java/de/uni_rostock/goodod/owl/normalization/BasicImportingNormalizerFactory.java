@@ -52,6 +52,6 @@ public class BasicImportingNormalizerFactory extends BasicNormalizerFactory {
 	@Override
 	public Normalizer getNormalizerForOntology(OWLOntology o)
 	{
-		return new BasicImportingNormalizer(o, importMap, loaderConfig);
+		return new BasicImportingNormalizer(o, importMap, getPrefixMap(), loaderConfig);
 	}
 }
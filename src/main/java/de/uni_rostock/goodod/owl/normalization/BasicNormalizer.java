@@ -27,6 +27,7 @@ import java.util.Vector;
 import org.semanticweb.owlapi.model.*;
 
 import de.uni_rostock.goodod.owl.ExpressionTransform;
+import de.uni_rostock.goodod.owl.IRIPrefixMap;
 
 
 /**
@@ -37,13 +38,24 @@ import de.uni_rostock.goodod.owl.ExpressionTransform;
  */
 public class BasicNormalizer extends AbstractNormalizer implements OWLAxiomVisitor {
 	protected Map<IRI, IRI> IRIMap;
+	private IRIPrefixMap prefixMap;
 	private IRITransformFactory transformFactory;
 
 	public BasicNormalizer(OWLOntology ont, Map<IRI,IRI>map) {
+		this(ont, map, new IRIPrefixMap(map));
+	}
+
+	/**
+	 * @param ont The ontology to normalize.
+	 * @param map The import mappings.
+	 * @param compiledMap The mappings compiled into an IRIPrefixMap, so that
+	 * normalizers with the same configuration can share it.
+	 */
+	public BasicNormalizer(OWLOntology ont, Map<IRI,IRI>map, IRIPrefixMap compiledMap) {
 		super(ont);
 		transformFactory = new IRITransformFactory();
 		IRIMap = map;
-
+		prefixMap = compiledMap;
 	}
 
 	/**
@@ -51,6 +63,7 @@ public class BasicNormalizer extends AbstractNormalizer implements OWLAxiomVisit
 	 */
 	public void setImportMappings(Map<IRI, IRI> oldToNewIRIMap) {
 		IRIMap = oldToNewIRIMap;
+		prefixMap = new IRIPrefixMap(oldToNewIRIMap);
 
 	}
 
@@ -75,7 +88,8 @@ public class BasicNormalizer extends AbstractNormalizer implements OWLAxiomVisit
 		 *   value IRIs.
 		 * - Visit all axioms from the ontology.
 		 * - For each axiom, check whether the axiom references an IRI that
-		 *   begins with an IRI from the keys in our IRIMap.
+		 *   begins with an IRI from the keys in our IRIMap (using the
+		 *   compiled prefixMap).
 		 * - Construct a new axiom by replacing the occurences of the key IRI
 		 *   with the value one.
 		 * - Add axiom changes for the the old/new axiom pair.
@@ -136,13 +150,9 @@ public class BasicNormalizer extends AbstractNormalizer implements OWLAxiomVisit
 	{
 		for (OWLEntity e : axiom.getSignature())
 		{
-			String entityName = e.getIRI().toString();
-			for (IRI requested : IRIMap.keySet())
+			if (prefixMap.needsRewrite(e.getIRI()))
 			{
-				if(entityName.startsWith(requested.toString()))
-				{
-					return true;
-				}
+				return true;
 			}
 		}
 		return false;
@@ -150,26 +160,7 @@ public class BasicNormalizer extends AbstractNormalizer implements OWLAxiomVisit
 	
 	private IRI newIRIForIRI(IRI oldIRI)
 	{
-		IRI newIRI = oldIRI;
-		String IRIString = oldIRI.toString();
-		for (IRI requested : IRIMap.keySet())
-		{
-			String reqString = requested.toString();
-			if (IRIString.startsWith(reqString))
-			{
-				// We extract everything that follows the requested key string.
-				String lastComponent = IRIString.substring((reqString.length()));
-				
-				// The value for that key will be the new start of the IRI.
-				IRI replacementStart = IRIMap.get(requested);
-				
-				// Concatenate the two and produce an IRI from them.
-				String newFullIRI = replacementStart.toString().concat(lastComponent);
-				newIRI = IRI.create(newFullIRI);
-				break;
-			}
-		}
-		return newIRI;
+		return prefixMap.rewrite(oldIRI);
 	}
 	
 	
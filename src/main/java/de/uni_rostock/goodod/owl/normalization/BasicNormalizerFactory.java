@@ -26,6 +26,8 @@ import org.apache.commons.configuration.SubnodeConfiguration;
 import org.semanticweb.owlapi.model.IRI;
 import org.semanticweb.owlapi.model.OWLOntology;
 
+import de.uni_rostock.goodod.owl.IRIPrefixMap;
+
 
 /**
  * @author Niels Grewe
@@ -33,6 +35,7 @@ import org.semanticweb.owlapi.model.OWLOntology;
  */
 public class BasicNormalizerFactory extends AbstractNormalizerFactory {
 	protected Map<IRI,IRI> importMap;
+	private IRIPrefixMap prefixMap;
 	
 	public BasicNormalizerFactory()
 	{
@@ -46,7 +49,21 @@ public class BasicNormalizerFactory extends AbstractNormalizerFactory {
 
 
 	public Normalizer getNormalizerForOntology(OWLOntology ont) {
-		return new BasicNormalizer(ont, importMap);
+		return new BasicNormalizer(ont, importMap, getPrefixMap());
+	}
+	
+	/**
+	 * @return The import map compiled for rewriting IRIs. It is created on
+	 * first use, after the map has been populated, and shared by all
+	 * normalizers of the factory.
+	 */
+	protected synchronized IRIPrefixMap getPrefixMap()
+	{
+		if (null == prefixMap)
+		{
+			prefixMap = new IRIPrefixMap(importMap);
+		}
+		return prefixMap;
 	}
 	
 	protected void populateMap()
@@ -18,7 +18,9 @@
 package de.uni_rostock.goodod.owl.normalization;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
@@ -40,6 +42,13 @@ public class ClassExpressionNamingNormalizer extends AbstractNormalizer {
 
 	protected Set<OWLOntologyChange> changes;
 	protected ClassExpressionNameProvider nameProvider;
+	/*
+	 * Named classes for the class expressions that are equivalent to one,
+	 * either in the ontology or in the changes we have scheduled. Only valid
+	 * during a single run of the normalizer.
+	 */
+	private Map<OWLClassExpression,OWLClass> equivalentClassIndex;
+	private Set<IRI> declaredIRIs;
 	private static Log logger = LogFactory
 			.getLog(ClassExpressionNamingNormalizer.class);
 	final static String autogeneratedURI = "http://www.iph.uni-rostock.de/goodod/autogen.owl#AutogeneratedClass";
@@ -87,6 +96,8 @@ public class ClassExpressionNamingNormalizer extends AbstractNormalizer {
 			throws OWLOntologyCreationException {
 
 		logger.debug("Generating names for anonymous classes.");
+		equivalentClassIndex = null;
+		declaredIRIs = new HashSet<IRI>();
 		// First step is to create named classes for all complex class
 		// expressions:
 		for (OWLSubClassOfAxiom a : ontology.getAxioms(AxiomType.SUBCLASS_OF, true)) {
@@ -122,6 +133,8 @@ public class ClassExpressionNamingNormalizer extends AbstractNormalizer {
 		}
 
 		flushChanges();
+		equivalentClassIndex = null;
+		declaredIRIs = null;
 	}
 
 	protected void flushChanges() {
@@ -156,17 +169,13 @@ public class ClassExpressionNamingNormalizer extends AbstractNormalizer {
 			// If the subclass is not atomic generate a description for it.
 			IRI newIRI = IRIForClassExpression(oldSub);
 			newSub = factory.getOWLClass(newIRI);
-			OWLEquivalentClassesAxiom ax = factory
-					.getOWLEquivalentClassesAxiom(newSub, oldSub);
-			changes.add(new AddAxiom(ontology, ax));
+			addEquivalence(newSub.asOWLClass(), oldSub);
 		}
 		if (false == superIsAtomic) {
 			// Same check for the superclass.
 			IRI newIRI = IRIForClassExpression(oldSuper);
 			newSuper = factory.getOWLClass(newIRI);
-			OWLEquivalentClassesAxiom ax = factory
-					.getOWLEquivalentClassesAxiom(newSuper, oldSuper);
-			changes.add(new AddAxiom(ontology, ax));
+			addEquivalence(newSuper.asOWLClass(), oldSuper);
 		}
 
 		OWLSubClassOfAxiom replacement = factory.getOWLSubClassOfAxiom(newSub,
@@ -199,9 +208,7 @@ public class ClassExpressionNamingNormalizer extends AbstractNormalizer {
 
 			for (OWLClass c : namedClasses) {
 				for (OWLClassExpression ce : expressions) {
-					OWLEquivalentClassesAxiom ax = factory
-							.getOWLEquivalentClassesAxiom(c, ce);
-					changes.add(new AddAxiom(ontology, ax));
+					addEquivalence(c, ce);
 				}
 				// Remember to assert the pairwise equivalence of the primitive
 				// classes.
@@ -218,9 +225,7 @@ public class ClassExpressionNamingNormalizer extends AbstractNormalizer {
 			for (OWLClassExpression ce : expressions) {
 				OWLClass c = factory.getOWLClass(IRIForClassExpression(ce));
 				newClasses.add(c);
-				OWLEquivalentClassesAxiom ax = factory
-						.getOWLEquivalentClassesAxiom(c, ce);
-				changes.add(new AddAxiom(ontology, ax));
+				addEquivalence(c, ce);
 			}
 
 			for (OWLClass c : newClasses) {
@@ -247,11 +252,9 @@ public class ClassExpressionNamingNormalizer extends AbstractNormalizer {
 		}
 
 		OWLClass newClass = factory.getOWLClass(IRIForClassExpression(ce));
-		OWLEquivalentClassesAxiom equiv = factory.getOWLEquivalentClassesAxiom(
-				newClass, ce);
 		OWLClassAssertionAxiom replacement = factory.getOWLClassAssertionAxiom(
 				newClass, i);
-		changes.add(new AddAxiom(ontology, equiv));
+		addEquivalence(newClass, ce);
 		changes.add(new AddAxiom(ontology, replacement));
 		changes.add(new RemoveAxiom(ontology, ax));
 
@@ -264,20 +267,45 @@ public class ClassExpressionNamingNormalizer extends AbstractNormalizer {
 			return ce.asOWLClass();
 		}
 
-		/*
-		 * Else, search through the equivalent classes axioms to find an axiom
-		 * that specifies the requested class as equivalent to a named class.
-		 */
-		Set<OWLEquivalentClassesAxiom> equivs = ontology.getAxioms(
-				AxiomType.EQUIVALENT_CLASSES, true);
-		for (OWLEquivalentClassesAxiom e : equivs) {
-			if (e.containsNamedEquivalentClass() && e.contains(ce)) {
-				// Just return one of the named classes at random.
-				Set<OWLClass> namedClasses = e.getNamedClasses();
-				return namedClasses.iterator().next();
+		// Else, look it up in the index of equivalent classes axioms.
+		return getEquivalentClassIndex().get(ce);
+	}
+
+	/**
+	 * Indexes the equivalent classes axioms of the ontology that specify a
+	 * class expression as equivalent to a named class.
+	 */
+	private Map<OWLClassExpression,OWLClass> getEquivalentClassIndex() {
+		if (null != equivalentClassIndex) {
+			return equivalentClassIndex;
+		}
+		equivalentClassIndex = new HashMap<OWLClassExpression,OWLClass>();
+		for (OWLEquivalentClassesAxiom e : ontology.getAxioms(
+				AxiomType.EQUIVALENT_CLASSES, true)) {
+			if (false == e.containsNamedEquivalentClass()) {
+				continue;
+			}
+			// Just use one of the named classes at random.
+			OWLClass named = e.getNamedClasses().iterator().next();
+			for (OWLClassExpression ce : e.getClassExpressions()) {
+				if (ce.isAnonymous() && (false == equivalentClassIndex.containsKey(ce))) {
+					equivalentClassIndex.put(ce, named);
+				}
 			}
 		}
-		return null;
+		return equivalentClassIndex;
+	}
+
+	/**
+	 * Schedules an axiom stating that the class is equivalent to the class
+	 * expression and records it in the index.
+	 */
+	protected void addEquivalence(OWLClass c, OWLClassExpression ce) {
+		changes.add(new AddAxiom(ontology, factory.getOWLEquivalentClassesAxiom(c, ce)));
+		if (ce.isAnonymous() && (null != equivalentClassIndex)
+				&& (false == equivalentClassIndex.containsKey(ce))) {
+			equivalentClassIndex.put(ce, c);
+		}
 	}
 
 	protected IRI IRIForClassExpression(OWLClassExpression ce) {
@@ -290,6 +318,10 @@ public class ClassExpressionNamingNormalizer extends AbstractNormalizer {
 		}
 
 		theIRI = nameProvider.IRIForClassExpression(ce);
+		if ((null != declaredIRIs) && (false == declaredIRIs.add(theIRI))) {
+			// We've already made sure that the class is declared.
+			return theIRI;
+		}
 		OWLAxiom classDecl = factory.getOWLDeclarationAxiom(factory
 				.getOWLClass(theIRI));
 		if (false == ontology.containsAxiom(classDecl))
@@ -18,8 +18,10 @@
 package de.uni_rostock.goodod.owl.normalization;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
@@ -27,39 +29,53 @@ import org.apache.commons.logging.LogFactory;
 import org.semanticweb.owlapi.model.*;
 
 import org.semanticweb.owlapi.reasoner.InferenceType;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
 
-import org.semanticweb.HermiT.Configuration;
-import org.semanticweb.HermiT.Configuration.ExistentialStrategyType;
-import org.semanticweb.HermiT.Configuration.TableauMonitorType;
-import org.semanticweb.HermiT.Reasoner;
-
-import de.uni_rostock.goodod.owl.SubClassCollector;
-import de.uni_rostock.goodod.owl.SuperClassCollector;
+import de.uni_rostock.goodod.owl.ClassHierarchyIndex;
+import de.uni_rostock.goodod.owl.ClassTaxonomy;
+import de.uni_rostock.goodod.owl.ClassificationStore;
+import de.uni_rostock.goodod.owl.ReasonerProvider;
+import de.uni_rostock.goodod.owl.SharedImportLayer;
 
 
 /**
- * Materializes the subsumption hierarchy of an ontology using the HermiT
- * reasoner.
+ * Materializes the subsumption hierarchy of an ontology using the reasoner
+ * of a ReasonerProvider (HermiT by default). If a ClassificationStore is available, the taxonomy computed by
+ * the reasoner is kept there and the reasoner is only run for ontologies
+ * whose taxonomy isn't stored yet.
  * @author Niels Grewe
  *
  */
 public class SubsumptionMaterializationNormalizer extends AbstractNormalizer {
 
-	private Reasoner reasoner;
+	private ReasonerProvider reasonerProvider;
+	private OWLReasoner reasoner;
+	private ClassTaxonomy taxonomy;
+	private SharedImportLayer sharedImports;
+	private ClassificationStore classificationStore;
+	private Map<OWLClass,Set<OWLClass>> importedTaxonomy;
+	private ClassHierarchyIndex hierarchy;
 	
 	private static Log logger = LogFactory.getLog(SubsumptionMaterializationNormalizer.class);
 	
 	public SubsumptionMaterializationNormalizer(OWLOntology ont)
+	{
+		this(ont, null, null, ReasonerProvider.getSharedProvider());
+	}
+	
+	/**
+	 * @param ont The ontology to normalize.
+	 * @param layer The layer of shared imports whose classification can be
+	 * reused, or null.
+	 * @param store The store to keep computed taxonomies in, or null.
+	 * @param provider The provider for the reasoner.
+	 */
+	public SubsumptionMaterializationNormalizer(OWLOntology ont, SharedImportLayer layer, ClassificationStore store, ReasonerProvider provider)
 	{
 		super(ont);
-		Configuration reasonerConfig = new Configuration();
-		reasonerConfig.throwInconsistentOntologyException = false;
-		//ReasonerProgressMonitor monitor = new ConsoleProgressMonitor();
-		reasonerConfig.existentialStrategyType = ExistentialStrategyType.INDIVIDUAL_REUSE;
-		//reasonerConfig.reasonerProgressMonitor = monitor;
-		reasonerConfig.tableauMonitorType = TableauMonitorType.NONE;
-		//reasonerConfig.individualTaskTimeout = 10000;
-		reasoner = new Reasoner(reasonerConfig, ontology);
+		sharedImports = layer;
+		classificationStore = store;
+		reasonerProvider = provider;
 	}
 	/* (non-Javadoc)
 	 * @see de.uni_rostock.goodod.owl.Normalizer#normalize(org.semanticweb.owlapi.model.OWLOntology)
@@ -85,13 +101,22 @@ public class SubsumptionMaterializationNormalizer extends AbstractNormalizer {
 		
 		logger.debug("Running subsumption materialization.");
 		
-		logger.debug("Classifying with reasoner.");
-		// Let the reasoner do the classification
-		reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
-		
+		try
+		{
+			classify();
 		
-		// Find all entailed subsumptions
-		findEntailedSubsumptions(IRIs);
+			// Find all entailed subsumptions
+			findEntailedSubsumptions(IRIs);
+		}
+		finally
+		{
+			if (null != reasoner)
+			{
+				reasoner.dispose();
+				reasoner = null;
+			}
+			taxonomy = null;
+		}
 		
 		// We do cycle elimination implicitly when finding entailments.
 		
@@ -126,10 +151,151 @@ public class SubsumptionMaterializationNormalizer extends AbstractNormalizer {
 		}
 	}
 
+	/**
+	 * Obtains the taxonomy of the ontology, either from the classification
+	 * store or by running the reasoner. If the ontology is inconsistent, there
+	 * is no useful taxonomy and we keep the reasoner around instead.
+	 */
+	private void classify()
+	{
+		String key = null;
+		if (null != classificationStore)
+		{
+			key = classificationStore.keyForOntology(ontology, reasonerProvider.getFingerprint());
+		}
+		if (null != key)
+		{
+			taxonomy = classificationStore.loadTaxonomy(key);
+			if (null != taxonomy)
+			{
+				logger.debug("Using stored taxonomy.");
+				return;
+			}
+		}
+		logger.debug("Classifying with reasoner.");
+		// Let the reasoner do the classification
+		reasoner = reasonerProvider.createReasoner(ontology);
+		try
+		{
+			reasonerProvider.precomputeInferences(reasoner, InferenceType.CLASS_HIERARCHY);
+		}
+		catch (OWLRuntimeException e)
+		{
+			logger.warn("Could not classify " + ontology.getOntologyID() + ": " + e.getMessage());
+			throw e;
+		}
+		if (false == reasoner.isConsistent())
+		{
+			return;
+		}
+		taxonomy = ClassTaxonomy.fromReasoner(reasoner, ontology.getClassesInSignature(true));
+		if (null != key)
+		{
+			classificationStore.storeTaxonomy(key, taxonomy);
+		}
+	}
+	
 	private void findEntailedSubsumptions(Set<IRI> IRIs)
 	{
 		Set<OWLClass> classes = ontology.getClassesInSignature(true);
-		
+		if (null != sharedImports)
+		{
+			importedTaxonomy = sharedImports.getImportedTaxonomy(ontology);
+		}
+		if (null != taxonomy)
+		{
+			findSubsumptionsInTaxonomy(classes, IRIs);
+		}
+		else
+		{
+			// The taxonomy of an inconsistent ontology is degenerate, so we ask for every pair.
+			findSubsumptionsByEntailment(classes, IRIs);
+		}
+		logger.debug("Found " + changes.size() + " new subsumptions.");
+		// Update the ontology with the changes we found.
+		commitChanges();
+	}
+	
+	/**
+	 * Reads the subsumptions between the classes and the target classes from
+	 * the classified taxonomy. This produces the same axioms as asking the
+	 * reasoner for the entailment of every pair, but only looks at the pairs
+	 * where one class is actually above the other.
+	 */
+	private void findSubsumptionsInTaxonomy(Set<OWLClass> classes, Set<IRI> IRIs)
+	{
+		Set<OWLClass> targets = new HashSet<OWLClass>();
+		for (IRI i : IRIs)
+		{
+			targets.add(factory.getOWLClass(i));
+		}
+		Map<OWLClass,Set<OWLClass>> superClasses = new HashMap<OWLClass,Set<OWLClass>>();
+		for (OWLClass c : classes)
+		{
+			for (OWLClass other : getEntailedSuperClasses(c, superClasses))
+			{
+				if (targets.contains(other))
+				{
+					addSubsumption(c, other, superClasses);
+				}
+			}
+		}
+		for (OWLClass other : targets)
+		{
+			for (OWLClass c : getEntailedSuperClasses(other, superClasses))
+			{
+				if (classes.contains(c))
+				{
+					addSubsumption(other, c, superClasses);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Adds an EquivalentClasses axiom if sup is also subsumed by sub, and a
+	 * SubClassOf axiom otherwise.
+	 */
+	private void addSubsumption(OWLClass sub, OWLClass sup, Map<OWLClass,Set<OWLClass>> superClasses)
+	{
+		if (getEntailedSuperClasses(sup, superClasses).contains(sub))
+		{
+			changes.add(new AddAxiom(ontology, factory.getOWLEquivalentClassesAxiom(sub, sup)));
+		}
+		else
+		{
+			changes.add(new AddAxiom(ontology, factory.getOWLSubClassOfAxiom(sub, sup)));
+		}
+	}
+	
+	/**
+	 * @return The direct and indirect superclasses of c together with the
+	 * classes equivalent to it, excluding c itself.
+	 */
+	private Set<OWLClass> getEntailedSuperClasses(OWLClass c, Map<OWLClass,Set<OWLClass>> superClasses)
+	{
+		Set<OWLClass> supers = superClasses.get(c);
+		if (null != supers)
+		{
+			return supers;
+		}
+		supers = taxonomy.getSuperClasses(c);
+		supers.addAll(taxonomy.getEquivalentClasses(c));
+		if (null != importedTaxonomy)
+		{
+			Set<OWLClass> known = importedTaxonomy.get(c);
+			if (null != known)
+			{
+				supers.addAll(known);
+			}
+		}
+		supers.remove(c);
+		superClasses.put(c, supers);
+		return supers;
+	}
+	
+	private void findSubsumptionsByEntailment(Set<OWLClass> classes, Set<IRI> IRIs)
+	{
 		for (OWLClass c : classes)
 		{
 			for (IRI i : IRIs)
@@ -142,8 +308,8 @@ public class SubsumptionMaterializationNormalizer extends AbstractNormalizer {
 				}
 				OWLAxiom ax = factory.getOWLSubClassOfAxiom(c, other);
 				OWLAxiom invAx = factory.getOWLSubClassOfAxiom(other,c);
-				boolean axEntailed = reasoner.isEntailed(ax);
-				boolean invEntailed = reasoner.isEntailed(invAx);
+				boolean axEntailed = isKnownSubsumption(c, other) || reasoner.isEntailed(ax);
+				boolean invEntailed = isKnownSubsumption(other, c) || reasoner.isEntailed(invAx);
 				if (axEntailed && invEntailed)
 				{
 					// Equivalent classes, just emit a EquivalentClasses axiom
@@ -163,15 +329,33 @@ public class SubsumptionMaterializationNormalizer extends AbstractNormalizer {
 				}
 			}
 		}
-		logger.debug("Found " + changes.size() + " new subsumptions.");
-		// Update the ontology with the changes we found.
-		commitChanges();
 	}
 
+	/**
+	 * Checks whether the subsumption is already entailed by a shared import,
+	 * in which case we don't need to ask the reasoner.
+	 */
+	private boolean isKnownSubsumption(OWLClass sub, OWLClass sup)
+	{
+		if (null == importedTaxonomy)
+		{
+			return false;
+		}
+		Set<OWLClass> supers = importedTaxonomy.get(sub);
+		return ((null != supers) && supers.contains(sup));
+	}
 	
 	private void cleanClassHierarchy()
 	{
 		Set<OWLSubClassOfAxiom> axioms = ontology.getAxioms(AxiomType.SUBCLASS_OF, true);
+		// The changes are only applied at the end, so the hierarchy stays the same while we look at it.
+		hierarchy = ClassHierarchyIndex.build(ontology, true);
+		/*
+		 * Compute the transitive reduction of the told hierarchy once. Every
+		 * subsumption between named classes that is not part of it is
+		 * entailed by transitivity alone and can be removed safely.
+		 */
+		BitSet[] reduced = hierarchy.computeTransitiveReduction();
 		for (OWLSubClassOfAxiom ax: axioms)
 		{
 			
@@ -181,19 +365,9 @@ public class SubsumptionMaterializationNormalizer extends AbstractNormalizer {
 			// Consider only named classes
 			if ((subEx instanceof OWLClass) && (superEx instanceof OWLClass))
 			{
-				
-				/*
-				 * Get the subclasses of the superclass and the
-				 * superclasses of the subclass. If the resulting sets
-				 * share a member (modulo the classes in the axiom), the subclass
-				 * relation is entailed by transitivity alone and we can safely
-				 * remove the axiom.
-				 */
-				Set<OWLClass> subs = transitiveSuperClasses(subEx.asOWLClass());					
-				Set<OWLClass> supers = transitiveSubClasses(superEx.asOWLClass());
-				subs.remove(superEx);
-				supers.remove(subEx);
-				if (false == Collections.disjoint(subs, supers))
+				int subID = hierarchy.getID(subEx.asOWLClass());
+				int superID = hierarchy.getID(superEx.asOWLClass());
+				if (false == reduced[subID].get(superID))
 				{
 					changes.add(new RemoveAxiom(ontology,ax));
 				}
@@ -222,14 +396,23 @@ public class SubsumptionMaterializationNormalizer extends AbstractNormalizer {
 		commitChanges();
 	}
 
+	private ClassHierarchyIndex getHierarchy()
+	{
+		if (null == hierarchy)
+		{
+			hierarchy = ClassHierarchyIndex.build(ontology, true);
+		}
+		return hierarchy;
+	}
+	
 	protected Set<OWLClass>transitiveSubClasses(OWLClass c)
 	{
-		return new SubClassCollector(c, ontology.getImportsClosure()).collect();
+		return getHierarchy().getDescendants(c);
 	}
 
 	protected Set<OWLClass>transitiveSuperClasses(OWLClass c)
 	{
-		return new SuperClassCollector(c, ontology.getImportsClosure()).collect();
+		return getHierarchy().getAncestors(c);
 	}
 	
 }
\ No newline at end of file
@@ -19,6 +19,9 @@ package de.uni_rostock.goodod.owl.normalization;
 
 import org.semanticweb.owlapi.model.OWLOntology;
 
+import de.uni_rostock.goodod.owl.OntologyCache;
+import de.uni_rostock.goodod.owl.ReasonerProvider;
+
 /**
  * @author Niels Grewe
  *
@@ -30,7 +33,13 @@ public class SubsumptionMaterializationNormalizerFactory extends
 	 * @see de.uni_rostock.goodod.owl.NormalizerFactory#getNormalizerForOntology(org.semanticweb.owlapi.model.OWLOntology)
 	 */
 	public Normalizer getNormalizerForOntology(OWLOntology ont) {
-		return new SubsumptionMaterializationNormalizer(ont);
+		OntologyCache cache = OntologyCache.getSharedCache();
+		if (null == cache)
+		{
+			return new SubsumptionMaterializationNormalizer(ont);
+		}
+		return new SubsumptionMaterializationNormalizer(ont, cache.getSharedImportLayer(),
+		  cache.getClassificationStore(), ReasonerProvider.getSharedProvider());
 	}
 
 }
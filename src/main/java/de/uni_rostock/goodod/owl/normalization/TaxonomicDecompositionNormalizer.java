@@ -88,10 +88,8 @@ public class TaxonomicDecompositionNormalizer extends ClassExpressionNamingNorma
 			if (false == (component instanceof OWLClass))
 			{
 				OWLClass newClass = factory.getOWLClass(IRIForClassExpression(component));
-				OWLEquivalentClassesAxiom equiv = factory.getOWLEquivalentClassesAxiom(
-						newClass, component);
 				OWLSubClassOfAxiom subCl = factory.getOWLSubClassOfAxiom(newClass, owlThing);
-				changes.add(new AddAxiom(ontology,equiv));
+				addEquivalence(newClass, component);
 				changes.add(new AddAxiom(ontology,subCl));
 			}
 		}
@@ -99,6 +99,16 @@ public class Configuration {
 		return config.getInt(key);
 	}
 	
+	public int getInt(String key, int def)
+	{
+		return config.getInt(key, def);
+	}
+	
+	public long getLong(String key, long def)
+	{
+		return config.getLong(key, def);
+	}
+	
 	public boolean getBoolean(String key)
 	{
 		return config.getBoolean(key);
@@ -0,0 +1,135 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 10.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.tools;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of tasks that are in flight at the same time. Callers
+ * block in acquire() until a permit is available instead of spinning.
+ * The throttle keeps track of how many callers are waiting and how long
+ * they had to wait.
+ *
+ * @author Niels Grewe
+ *
+ */
+public class Throttle {
+
+	private final String name;
+	private final Semaphore permits;
+	private final AtomicInteger waiting;
+	private final AtomicInteger maximumWaiting;
+	private final AtomicLong acquisitions;
+	private final AtomicLong waitTime;
+
+	/**
+	 *
+	 * @param theName The name used when reporting statistics.
+	 * @param permitCount The number of tasks that may be in flight at the
+	 * same time.
+	 */
+	public Throttle(String theName, int permitCount)
+	{
+		name = theName;
+		// Fair, so that tasks are admitted in the order they were submitted.
+		permits = new Semaphore(Math.max(1, permitCount), true);
+		waiting = new AtomicInteger();
+		maximumWaiting = new AtomicInteger();
+		acquisitions = new AtomicLong();
+		waitTime = new AtomicLong();
+	}
+
+	/**
+	 * Blocks until a permit is available.
+	 *
+	 * @throws InterruptedException If the thread was interrupted while
+	 * waiting.
+	 */
+	public void acquire() throws InterruptedException
+	{
+		long start = System.nanoTime();
+		int depth = waiting.incrementAndGet();
+		int max = maximumWaiting.get();
+		while ((depth > max) && (false == maximumWaiting.compareAndSet(max, depth)))
+		{
+			max = maximumWaiting.get();
+		}
+		try
+		{
+			permits.acquire();
+		}
+		finally
+		{
+			waiting.decrementAndGet();
+		}
+		waitTime.addAndGet(System.nanoTime() - start);
+		acquisitions.incrementAndGet();
+	}
+
+	/**
+	 * Returns a permit obtained by acquire().
+	 */
+	public void release()
+	{
+		permits.release();
+	}
+
+	/**
+	 * @return The number of threads currently waiting for a permit.
+	 */
+	public int getQueueDepth()
+	{
+		return waiting.get();
+	}
+
+	/**
+	 * @return The largest number of threads that were waiting for a permit
+	 * at the same time.
+	 */
+	public int getMaximumQueueDepth()
+	{
+		return maximumWaiting.get();
+	}
+
+	/**
+	 * @return The number of permits handed out so far.
+	 */
+	public long getAcquisitionCount()
+	{
+		return acquisitions.get();
+	}
+
+	/**
+	 * @return The total time in milliseconds spent waiting for permits.
+	 */
+	public long getWaitTime()
+	{
+		return (waitTime.get() / 1000000);
+	}
+
+	@Override
+	public String toString()
+	{
+		long count = acquisitions.get();
+		long average = (0 == count) ? 0 : (getWaitTime() / count);
+		return name + ": " + count + " admitted, " + getWaitTime() + "ms waited (average " + average
+		  + "ms), queue depth " + getQueueDepth() + " (maximum " + getMaximumQueueDepth() + ").";
+	}
+}
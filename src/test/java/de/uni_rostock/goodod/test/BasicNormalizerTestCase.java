@@ -25,6 +25,7 @@ import org.semanticweb.owlapi.model.*;
 import org.junit.*;
 
 
+import de.uni_rostock.goodod.owl.IRIPrefixMap;
 import de.uni_rostock.goodod.owl.normalization.BasicNormalizerFactory;
 
 /**
@@ -81,7 +82,17 @@ public class BasicNormalizerTestCase extends AbstractNormalizerTestCase {
 		assertFalse(classes.contains(bioTopClass));
 		assertTrue(classes.contains(nonBioTopClass));
 	}
-}
-
-
 
+	@Test public void testLongestPrefixWins()
+	{
+		Map<IRI,IRI> importMap = new HashMap<IRI,IRI>();
+		importMap.put(IRI.create("http://example.org/a"), IRI.create("http://example.org/x"));
+		importMap.put(IRI.create("http://example.org/ab"), IRI.create("http://example.org/y"));
+		IRIPrefixMap prefixMap = new IRIPrefixMap(importMap);
+		assertEquals(IRI.create("http://example.org/y#C"), prefixMap.rewrite(IRI.create("http://example.org/ab#C")));
+		assertEquals(IRI.create("http://example.org/x#C"), prefixMap.rewrite(IRI.create("http://example.org/a#C")));
+		assertEquals(IRI.create("http://example.org/y"), prefixMap.rewrite(IRI.create("http://example.org/ab")));
+		assertFalse(prefixMap.needsRewrite(IRI.create("http://example.org/b#C")));
+		assertFalse(prefixMap.needsRewrite(IRI.create("http://example.org/")));
+	}
+}
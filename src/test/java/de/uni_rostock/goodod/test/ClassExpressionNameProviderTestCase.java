@@ -0,0 +1,108 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 30.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.*;
+import org.semanticweb.owlapi.model.*;
+
+import de.uni_rostock.goodod.owl.ClassExpressionNameProvider;
+
+/**
+ * @author Niels Grewe
+ * Test cases for the names of class expressions.
+ */
+public class ClassExpressionNameProviderTestCase extends AbstractNormalizerTestCase {
+
+	private ClassExpressionNameProvider provider;
+	private List<OWLClassExpression> expressions;
+
+	@Override
+	@Before public void setUp() throws OWLOntologyCreationException
+	{
+		super.setUp();
+		provider = new ClassExpressionNameProvider();
+		expressions = new ArrayList<OWLClassExpression>();
+		OWLObjectProperty p = factory.getOWLObjectProperty(IRI("p"));
+		for (int i = 0; i < 50; i++)
+		{
+			OWLClass c = factory.getOWLClass(IRI("C" + i));
+			expressions.add(factory.getOWLObjectComplementOf(c));
+			expressions.add(factory.getOWLObjectSomeValuesFrom(p, c));
+		}
+	}
+
+	@Test public void testNamesDoNotDependOnOrder()
+	{
+		ClassExpressionNameProvider otherProvider = new ClassExpressionNameProvider();
+		for (int i = expressions.size() - 1; i >= 0; i--)
+		{
+			otherProvider.IRIForClassExpression(expressions.get(i));
+		}
+		for (OWLClassExpression ce : expressions)
+		{
+			assertEquals(otherProvider.IRIForClassExpression(ce), provider.IRIForClassExpression(ce));
+		}
+		assertEquals(expressions.size(), provider.size());
+		assertEquals(0, provider.getCollisionCount());
+	}
+
+	@Test public void testConcurrentNaming() throws Exception
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<List<IRI>>> results = new ArrayList<Future<List<IRI>>>();
+		for (int i = 0; i < 4; i++)
+		{
+			results.add(executor.submit(new Callable<List<IRI>>()
+			{
+				public List<IRI> call()
+				{
+					List<IRI> names = new ArrayList<IRI>();
+					for (OWLClassExpression ce : expressions)
+					{
+						names.add(provider.IRIForClassExpression(ce));
+					}
+					return names;
+				}
+			}));
+		}
+		List<IRI> first = results.get(0).get();
+		for (Future<List<IRI>> f : results)
+		{
+			assertEquals(first, f.get());
+		}
+		executor.shutdown();
+		assertEquals(expressions.size(), provider.size());
+		assertEquals(expressions.size(), provider.getClassExpressionNames().values().size());
+	}
+
+	@Test public void testRegisteredNamesAreReused()
+	{
+		IRI name = IRI.create("http://www.iph.uni-rostock.de/goodod/autogen.owl#AutogeneratedClass17");
+		assertTrue(provider.registerIRIForClassExpression(expressions.get(0), name));
+		assertEquals(name, provider.IRIForClassExpression(expressions.get(0)));
+		assertFalse(provider.registerIRIForClassExpression(expressions.get(1), name));
+		assertFalse(name.equals(provider.IRIForClassExpression(expressions.get(1))));
+	}
+}
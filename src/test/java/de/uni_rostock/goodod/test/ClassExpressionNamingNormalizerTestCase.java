@@ -218,4 +218,35 @@ public class ClassExpressionNamingNormalizerTestCase extends
 		}
 		assertTrue(notAHasEquiv);
 	}
+	
+	@Test public void testReuseEquivalentClass() throws OWLOntologyCreationException
+	{
+		OWLClass A = addClass("A");
+		OWLClass B = addClass("B");
+		OWLClass C = addClass("C");
+		OWLClass D = addClass("D");
+		OWLClassExpression notB = factory.getOWLObjectComplementOf(B);
+		OWLClassExpression notC = factory.getOWLObjectComplementOf(C);
+		addAxiom(factory.getOWLEquivalentClassesAxiom(A, notB));
+		addSubClassOf(C, notB);
+		addSubClassOf(D, notB);
+		addSubClassOf(A, notC);
+		addSubClassOf(D, notC);
+		normalizer.normalize(ontology);
+		assertTrue(ontology.containsAxiom(factory.getOWLSubClassOfAxiom(C, A)));
+		assertTrue(ontology.containsAxiom(factory.getOWLSubClassOfAxiom(D, A)));
+		// Both uses of notC share one autogenerated class.
+		Set<OWLClass> expected = new HashSet<OWLClass>();
+		expected.add(A);
+		expected.add(B);
+		expected.add(C);
+		expected.add(D);
+		Set<OWLClass> actual = ontology.getClassesInSignature();
+		actual.removeAll(expected);
+		assertEquals(1, actual.size());
+		OWLClass notCClass = actual.iterator().next();
+		assertTrue(ontology.containsAxiom(factory.getOWLSubClassOfAxiom(A, notCClass)));
+		assertTrue(ontology.containsAxiom(factory.getOWLSubClassOfAxiom(D, notCClass)));
+		assertTrue(ontology.containsAxiom(factory.getOWLDeclarationAxiom(notCClass)));
+	}
 }
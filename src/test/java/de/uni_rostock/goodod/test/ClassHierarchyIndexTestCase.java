@@ -0,0 +1,119 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 13.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.test;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.*;
+import org.semanticweb.owlapi.model.*;
+
+import de.uni_rostock.goodod.owl.ClassHierarchyIndex;
+import de.uni_rostock.goodod.owl.SubClassCollector;
+import de.uni_rostock.goodod.owl.SuperClassCollector;
+
+/**
+ * @author Niels Grewe
+ * Test cases for the precomputed class hierarchy. The index needs to agree
+ * with the sub- and superclass collectors.
+ */
+public class ClassHierarchyIndexTestCase extends AbstractNormalizerTestCase {
+
+	@Override
+	@Before public void setUp() throws OWLOntologyCreationException
+	{
+		super.setUp();
+		OWLClass A = addClass("A");
+		OWLClass B = addClass("B");
+		OWLClass C = addClass("C");
+		OWLClass D = addClass("D");
+		OWLClass E = addClass("E");
+		OWLClass F = addClass("F");
+		addClass("G");
+		addSubClassOf(C, B);
+		addSubClassOf(B, A);
+		addSubClassOf(D, B);
+		// E and F form a cycle below A
+		addSubClassOf(E, A);
+		addSubClassOf(F, E);
+		addSubClassOf(E, F);
+		// Anonymous superclasses are not part of the hierarchy
+		addSubClassOf(A, factory.getOWLObjectComplementOf(D));
+	}
+
+	@Test public void testAgreesWithCollectors()
+	{
+		Set<OWLOntology> ontologies = Collections.singleton(ontology);
+		ClassHierarchyIndex index = new ClassHierarchyIndex(ontologies);
+		for (OWLClass c : ontology.getClassesInSignature())
+		{
+			assertEquals(SuperClassCollector.collect(c, ontologies), index.getAncestors(c));
+			assertEquals(SubClassCollector.collect(c, ontologies), index.getDescendants(c));
+		}
+	}
+
+	@Test public void testCycles()
+	{
+		ClassHierarchyIndex index = ClassHierarchyIndex.build(ontology, false);
+		OWLClass E = factory.getOWLClass(IRI("E"));
+		assertTrue(index.isAncestor(E, E));
+		assertTrue(index.isAncestor(E, factory.getOWLClass(IRI("F"))));
+		assertFalse(index.isAncestor(factory.getOWLClass(IRI("A")), factory.getOWLClass(IRI("A"))));
+	}
+
+	@Test public void testTransitiveReduction()
+	{
+		OWLClass A = factory.getOWLClass(IRI("A"));
+		OWLClass B = factory.getOWLClass(IRI("B"));
+		OWLClass C = factory.getOWLClass(IRI("C"));
+		OWLClass D = factory.getOWLClass(IRI("D"));
+		addSubClassOf(C, A);
+		addSubClassOf(D, C);
+		addSubClassOf(factory.getOWLClass(IRI("F")), A);
+		ClassHierarchyIndex index = ClassHierarchyIndex.build(ontology, false);
+		BitSet[] reduced = index.computeTransitiveReduction();
+		assertTrue(reduced[index.getID(C)].get(index.getID(B)));
+		assertFalse(reduced[index.getID(C)].get(index.getID(A)));
+		assertFalse(reduced[index.getID(D)].get(index.getID(B)));
+		// All subsumptions, including those in the cycle, agree with the definition
+		for (OWLSubClassOfAxiom ax : ontology.getAxioms(AxiomType.SUBCLASS_OF))
+		{
+			if (ax.getSuperClass().isAnonymous())
+			{
+				continue;
+			}
+			OWLClass sub = ax.getSubClass().asOWLClass();
+			OWLClass sup = ax.getSuperClass().asOWLClass();
+			Set<OWLClass> between = index.getAncestors(sub);
+			between.retainAll(index.getDescendants(sup));
+			between.remove(sub);
+			between.remove(sup);
+			assertEquals(between.isEmpty(), reduced[index.getID(sub)].get(index.getID(sup)));
+		}
+	}
+
+	@Test public void testUnknownClass()
+	{
+		ClassHierarchyIndex index = ClassHierarchyIndex.build(ontology, false);
+		OWLClass unknown = factory.getOWLClass(IRI("Unknown"));
+		assertEquals(-1, index.getID(unknown));
+		assertTrue(index.getAncestors(unknown).isEmpty());
+		assertTrue(index.getDescendantIDs(unknown).isEmpty());
+	}
+}
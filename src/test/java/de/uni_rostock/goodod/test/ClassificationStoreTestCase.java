@@ -0,0 +1,128 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 27.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.test;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.*;
+import org.semanticweb.HermiT.Reasoner;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.reasoner.InferenceType;
+
+import de.uni_rostock.goodod.owl.ClassTaxonomy;
+import de.uni_rostock.goodod.owl.ClassificationStore;
+
+/**
+ * @author Niels Grewe
+ * Test cases for the on-disk store of taxonomies.
+ */
+public class ClassificationStoreTestCase extends AbstractNormalizerTestCase {
+
+	private File directory;
+	private ClassificationStore store;
+
+	@Override
+	@Before public void setUp() throws OWLOntologyCreationException
+	{
+		super.setUp();
+		try
+		{
+			directory = File.createTempFile("classifications", "");
+			directory.delete();
+			store = new ClassificationStore(directory);
+		}
+		catch (IOException e)
+		{
+			fail(e.toString());
+		}
+		OWLClass A = addClass("A");
+		OWLClass B = addClass("B");
+		OWLClass C = addClass("C");
+		OWLClass D = addClass("D");
+		addSubClassOf(B, A);
+		addAxiom(factory.getOWLEquivalentClassesAxiom(C, B));
+		// D is unsatisfiable
+		addSubClassOf(D, A);
+		addSubClassOf(D, factory.getOWLObjectComplementOf(A));
+	}
+
+	@Override
+	@After public void tearDown()
+	{
+		for (File f : directory.listFiles())
+		{
+			f.delete();
+		}
+		directory.delete();
+	}
+
+	private ClassTaxonomy classify()
+	{
+		Reasoner reasoner = new Reasoner(ontology);
+		reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+		ClassTaxonomy taxonomy = ClassTaxonomy.fromReasoner(reasoner, ontology.getClassesInSignature(true));
+		reasoner.dispose();
+		return taxonomy;
+	}
+
+	@Test public void testRoundTrip()
+	{
+		ClassTaxonomy taxonomy = classify();
+		String key = store.keyForOntology(ontology, "test");
+		assertNull(store.loadTaxonomy(key));
+		store.storeTaxonomy(key, taxonomy);
+		ClassTaxonomy loaded = store.loadTaxonomy(key);
+		assertNotNull(loaded);
+		for (OWLClass c : ontology.getClassesInSignature())
+		{
+			assertEquals(taxonomy.getEquivalentClasses(c), loaded.getEquivalentClasses(c));
+			assertEquals(taxonomy.getDirectSuperClasses(c), loaded.getDirectSuperClasses(c));
+			assertEquals(taxonomy.getDirectSubClasses(c), loaded.getDirectSubClasses(c));
+			assertEquals(taxonomy.getSuperClasses(c), loaded.getSuperClasses(c));
+		}
+		assertEquals(1, store.getHitCount());
+		assertEquals(1, store.getMissCount());
+	}
+
+	@Test public void testTaxonomy()
+	{
+		ClassTaxonomy taxonomy = classify();
+		OWLClass A = factory.getOWLClass(IRI("A"));
+		OWLClass B = factory.getOWLClass(IRI("B"));
+		OWLClass C = factory.getOWLClass(IRI("C"));
+		OWLClass D = factory.getOWLClass(IRI("D"));
+		assertTrue(taxonomy.getEquivalentClasses(B).contains(C));
+		assertTrue(taxonomy.getEquivalentClasses(D).contains(factory.getOWLNothing()));
+		assertTrue(taxonomy.getDirectSuperClasses(C).contains(A));
+		assertTrue(taxonomy.getDirectSubClasses(A).contains(B));
+		assertTrue(taxonomy.getSuperClasses(D).contains(B));
+		assertTrue(taxonomy.getSuperClasses(D).contains(factory.getOWLThing()));
+		assertFalse(taxonomy.getSuperClasses(B).contains(C));
+	}
+
+	@Test public void testKeyIgnoresAnnotations()
+	{
+		String key = store.keyForOntology(ontology, "test");
+		addAxiom(factory.getOWLAnnotationAssertionAxiom(factory.getRDFSLabel(), IRI("A"), factory.getOWLLiteral("A")));
+		assertEquals(key, store.keyForOntology(ontology, "test"));
+		assertFalse(key.equals(store.keyForOntology(ontology, "other")));
+		addSubClassOf(factory.getOWLClass(IRI("A")), factory.getOWLClass(IRI("E")));
+		assertFalse(key.equals(store.keyForOntology(ontology, "test")));
+	}
+}
@@ -0,0 +1,95 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 16.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.*;
+import org.semanticweb.owlapi.model.*;
+
+import de.uni_rostock.goodod.owl.ClassHierarchyIndex;
+import de.uni_rostock.goodod.owl.CotopyCache;
+
+/**
+ * @author Niels Grewe
+ * Test cases for the memo of semantic cotopies.
+ */
+public class CotopyCacheTestCase extends AbstractNormalizerTestCase {
+
+	private ClassHierarchyIndex index;
+
+	@Override
+	@Before public void setUp() throws OWLOntologyCreationException
+	{
+		super.setUp();
+		OWLClass previous = addClass("C0");
+		for (int i = 1; i < 40; i++)
+		{
+			OWLClass c = addClass("C" + i);
+			addSubClassOf(c, previous);
+			previous = c;
+		}
+		index = ClassHierarchyIndex.build(ontology, false);
+	}
+
+	@Test public void testAgreesWithIndex()
+	{
+		CotopyCache cache = new CotopyCache(1000);
+		for (OWLClass c : ontology.getClassesInSignature())
+		{
+			Set<OWLClass> expected = new HashSet<OWLClass>(index.getAncestors(c));
+			expected.addAll(index.getDescendants(c));
+			expected.add(c);
+			assertEquals(expected, cache.getSemanticCotopy(c, index));
+		}
+		OWLClass unknown = factory.getOWLClass(IRI("Unknown"));
+		assertEquals(1, cache.getSemanticCotopy(unknown, index).size());
+	}
+
+	@Test public void testHitsAndForget()
+	{
+		CotopyCache cache = new CotopyCache(1000);
+		OWLClass c = factory.getOWLClass(IRI("C5"));
+		Set<OWLClass> first = cache.getSemanticCotopy(c, index);
+		assertSame(first, cache.getSemanticCotopy(c, index));
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+
+		// Same ontology, but a different index, so the cotopy isn't shared.
+		ClassHierarchyIndex other = ClassHierarchyIndex.build(ontology, false);
+		cache.getSemanticCotopy(c, other);
+		assertEquals(2, cache.getMissCount());
+
+		cache.forget(index);
+		assertEquals(1, cache.size());
+		cache.getSemanticCotopy(c, index);
+		assertEquals(3, cache.getMissCount());
+	}
+
+	@Test public void testBounded()
+	{
+		CotopyCache cache = new CotopyCache(16);
+		for (OWLClass c : ontology.getClassesInSignature())
+		{
+			cache.getSemanticCotopy(c, index);
+		}
+		assertTrue(cache.size() <= cache.getMaximumSize());
+		assertEquals(40 - cache.size(), cache.getEvictionCount());
+	}
+}
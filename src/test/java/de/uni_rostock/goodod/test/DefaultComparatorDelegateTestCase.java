@@ -0,0 +1,110 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 14.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.test;
+
+import java.util.Collections;
+
+import org.junit.*;
+import org.semanticweb.owlapi.model.*;
+
+import de.uni_rostock.goodod.owl.ClassLookupIndex;
+import de.uni_rostock.goodod.owl.comparison.DefaultComparatorDelegate;
+
+/**
+ * @author Niels Grewe
+ * Test cases for the matching of classes between ontologies.
+ */
+public class DefaultComparatorDelegateTestCase extends AbstractTestCase {
+
+	private OWLOntology ontologyA;
+	private OWLOntology ontologyB;
+	private DefaultComparatorDelegate delegate;
+
+	@Override
+	@Before public void setUp() throws OWLOntologyCreationException
+	{
+		super.setUp();
+		ontologyA = manager.createOntology(IRI.create(baseIRI + "/A"));
+		ontologyB = manager.createOntology(IRI.create(baseIRI + "/B"));
+		delegate = new DefaultComparatorDelegate(false);
+		addClass(ontologyA, IRI("Same"), null);
+		addClass(ontologyB, IRI("Same"), null);
+		addClass(ontologyA, IRI.create("http://example.com/a#Fragment"), null);
+		addClass(ontologyB, IRI.create("http://example.com/b#Fragment"), null);
+		addClass(ontologyA, IRI("BFO_0001"), "entity");
+		addClass(ontologyB, IRI("BFO_0002"), "entity");
+		addClass(ontologyA, IRI("Labelled"), "something");
+		addClass(ontologyB, IRI("Other"), "something else");
+		addClass(ontologyB, IRI("Unrelated"), null);
+	}
+
+	private void addClass(OWLOntology o, IRI theIRI, String label)
+	{
+		OWLClass c = factory.getOWLClass(theIRI);
+		manager.addAxiom(o, factory.getOWLDeclarationAxiom(c));
+		if (null != label)
+		{
+			manager.addAxiom(o, factory.getOWLAnnotationAssertionAxiom(factory.getRDFSLabel(),
+			  theIRI, factory.getOWLLiteral(label)));
+		}
+	}
+
+	@Test public void testKeysAgreeWithEquality()
+	{
+		for (OWLClass a : ontologyA.getClassesInSignature())
+		{
+			for (OWLClass b : ontologyB.getClassesInSignature())
+			{
+				boolean equal = delegate.classesConsideredEqual(a, ontologyA, b, ontologyB);
+				boolean shareKeys = (false == Collections.disjoint(delegate.getEquivalenceKeys(a, ontologyA),
+				  delegate.getEquivalenceKeys(b, ontologyB)));
+				assertEquals(a + " vs. " + b, equal, shareKeys);
+			}
+		}
+	}
+
+	@Test public void testFindClass()
+	{
+		OWLClass bfo1 = factory.getOWLClass(IRI("BFO_0001"));
+		assertEquals(factory.getOWLClass(IRI("BFO_0002")), delegate.findClass(bfo1, ontologyA, ontologyB));
+		OWLClass fragment = factory.getOWLClass(IRI.create("http://example.com/a#Fragment"));
+		assertEquals(factory.getOWLClass(IRI.create("http://example.com/b#Fragment")), delegate.findClass(fragment, ontologyA, ontologyB));
+		assertNull(delegate.findClass(factory.getOWLClass(IRI("Labelled")), ontologyA, ontologyB));
+	}
+
+	@Test public void testLookupAgreesWithScan()
+	{
+		// Several candidates for the same label:
+		addClass(ontologyB, IRI("BFO_0003"), "entity");
+		addClass(ontologyB, IRI.create("http://example.com/c#Fragment"), "entity");
+		ClassLookupIndex index = new ClassLookupIndex(ontologyB, false);
+		for (OWLClass a : ontologyA.getClassesInSignature())
+		{
+			OWLClass expected = null;
+			for (OWLClass b : ontologyB.getClassesInSignature())
+			{
+				if (delegate.classesConsideredEqual(a, ontologyA, b, ontologyB))
+				{
+					expected = b;
+					break;
+				}
+			}
+			assertEquals(expected, index.findClass(a, ontologyA));
+		}
+	}
+}
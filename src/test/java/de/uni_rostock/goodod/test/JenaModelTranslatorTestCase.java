@@ -0,0 +1,84 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 24.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import org.junit.*;
+import org.coode.owlapi.turtle.TurtleOntologyFormat;
+import org.semanticweb.owlapi.model.*;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.vocabulary.OWL;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+import de.uni_rostock.goodod.owl.JenaModelTranslator;
+
+/**
+ * @author Niels Grewe
+ *
+ */
+public class JenaModelTranslatorTestCase extends AbstractNormalizerTestCase {
+
+	private Model roundTrip(OWLOntology o) throws Throwable
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		manager.saveOntology(o, new TurtleOntologyFormat(), out);
+		Model m = ModelFactory.createDefaultModel();
+		m.read(new ByteArrayInputStream(out.toByteArray()), o.getOntologyID().getOntologyIRI().toString(), "TURTLE");
+		return m;
+	}
+
+	@Test public void testSameGraphAsRenderer() throws Throwable
+	{
+		OWLClass a = addClass("A");
+		OWLClass b = factory.getOWLClass(IRI("B"));
+		OWLObjectProperty p = factory.getOWLObjectProperty(IRI("p"));
+		addSubClassOf(a, factory.getOWLObjectIntersectionOf(b, factory.getOWLObjectSomeValuesFrom(p, b)));
+		addSubClassOf(b, factory.getOWLObjectSomeValuesFrom(p, b));
+		addAxiom(factory.getOWLAnnotationAssertionAxiom(factory.getRDFSLabel(), a.getIRI(), factory.getOWLLiteral("A", "en")));
+		addAxiom(factory.getOWLClassAssertionAxiom(a, factory.getOWLAnonymousIndividual()));
+		Model translated = JenaModelTranslator.translateToModel(ontology);
+		assertTrue(translated.isIsomorphicWith(roundTrip(ontology)));
+		assertTrue(translated.contains(translated.createResource(IRI("B").toString()), RDF.type, OWL.Class));
+	}
+
+	@Test public void testBioTopLite() throws Throwable
+	{
+		File f = new File(JenaModelTranslatorTestCase.class.getResource(File.separatorChar + "biotoplite.owl").toURI());
+		OWLOntology biotop = manager.loadOntologyFromOntologyDocument(f);
+		int axiomCount = biotop.getAxiomCount();
+		Model translated = JenaModelTranslator.translateToModel(biotop);
+		assertTrue(translated.isIsomorphicWith(roundTrip(biotop)));
+		assertEquals(axiomCount, biotop.getAxiomCount());
+	}
+
+	@Test public void testImportsNotTranslated() throws Throwable
+	{
+		addClass("A");
+		OWLImportsDeclaration i = factory.getOWLImportsDeclaration(IRI.create("http://www.phf.uni-rostock.de/goodod/imported.owl"));
+		manager.applyChange(new AddImport(ontology, i));
+		Model translated = JenaModelTranslator.translateToModel(ontology);
+		assertFalse(translated.contains(null, OWL.imports, (RDFNode)null));
+		assertTrue(ontology.getImportsDeclarations().contains(i));
+	}
+}
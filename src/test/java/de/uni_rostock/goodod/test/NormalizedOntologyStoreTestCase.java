@@ -0,0 +1,124 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 03.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.junit.*;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import de.uni_rostock.goodod.owl.ClassExpressionNameProvider;
+import de.uni_rostock.goodod.owl.NormalizedOntologyStore;
+
+/**
+ * @author Niels Grewe
+ * Test cases for the on-disk store of normalized ontologies.
+ */
+public class NormalizedOntologyStoreTestCase extends AbstractNormalizerTestCase {
+
+	private File directory;
+	private File source;
+
+	@Override
+	@Before public void setUp() throws OWLOntologyCreationException
+	{
+		super.setUp();
+		try
+		{
+			directory = File.createTempFile("store", "");
+			directory.delete();
+			directory.mkdirs();
+			source = new File(directory, "source.owl");
+			FileWriter writer = new FileWriter(source);
+			writer.write("Ontology(<" + baseIRI + ">)");
+			writer.close();
+		}
+		catch (IOException e)
+		{
+			fail(e.toString());
+		}
+	}
+
+	@Override
+	@After public void tearDown()
+	{
+		for (File f : directory.listFiles())
+		{
+			f.delete();
+		}
+		directory.delete();
+	}
+
+	@Test public void testRoundTrip() throws IOException
+	{
+		OWLClass A = addClass("A");
+		OWLClass B = addClass("B");
+		addSubClassOf(B, A);
+		NormalizedOntologyStore store = new NormalizedOntologyStore(directory, "test", new ClassExpressionNameProvider());
+		String key = store.keyForSource(source);
+		OWLOntologyManager otherManager = OWLManager.createOWLOntologyManager();
+		assertNull(store.loadNormalizedOntology(key, otherManager, new OWLOntologyLoaderConfiguration()));
+		store.storeNormalizedOntology(key, ontology);
+		OWLOntology loaded = store.loadNormalizedOntology(key, otherManager, new OWLOntologyLoaderConfiguration());
+		assertNotNull(loaded);
+		assertEquals(ontology.getAxioms(), loaded.getAxioms());
+		assertEquals(1, store.getHitCount());
+		assertEquals(1, store.getMissCount());
+	}
+
+	@Test public void testFingerprintChangesKey() throws IOException
+	{
+		NormalizedOntologyStore storeA = new NormalizedOntologyStore(directory, "A", null);
+		NormalizedOntologyStore storeB = new NormalizedOntologyStore(directory, "B", null);
+		assertFalse(storeA.keyForSource(source).equals(storeB.keyForSource(source)));
+	}
+
+	@Test public void testNamesArePersisted() throws IOException
+	{
+		OWLClassExpression notA = factory.getOWLObjectComplementOf(addClass("A"));
+		ClassExpressionNameProvider provider = new ClassExpressionNameProvider();
+		IRI name = provider.IRIForClassExpression(notA);
+		new NormalizedOntologyStore(directory, "test", provider).close();
+
+		// A fresh provider needs to hand out the same name.
+		ClassExpressionNameProvider otherProvider = new ClassExpressionNameProvider();
+		new NormalizedOntologyStore(directory, "test", otherProvider);
+		assertEquals(name, otherProvider.IRIForClassExpression(notA));
+	}
+
+	@Test public void testConflictingNamesAreRejected() throws IOException
+	{
+		OWLClassExpression notA = factory.getOWLObjectComplementOf(addClass("A"));
+		OWLClassExpression notB = factory.getOWLObjectComplementOf(addClass("B"));
+		ClassExpressionNameProvider provider = new ClassExpressionNameProvider();
+		NormalizedOntologyStore store = new NormalizedOntologyStore(directory, "test", provider);
+		OWLClass named = factory.getOWLClass(provider.IRIForClassExpression(notA));
+		addAxiom(factory.getOWLEquivalentClassesAxiom(named, notA));
+		String key = store.keyForSource(source);
+		store.storeNormalizedOntology(key, ontology);
+
+		// Now a run where the name has been given to another expression:
+		ClassExpressionNameProvider otherProvider = new ClassExpressionNameProvider();
+		assertTrue(otherProvider.registerIRIForClassExpression(notB, named.getIRI()));
+		NormalizedOntologyStore otherStore = new NormalizedOntologyStore(directory, "test", otherProvider);
+		assertNull(otherStore.loadNormalizedOntology(key, OWLManager.createOWLOntologyManager(), new OWLOntologyLoaderConfiguration()));
+	}
+}
@@ -0,0 +1,115 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 05.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.*;
+import org.semanticweb.owlapi.model.*;
+
+import de.uni_rostock.goodod.owl.OntologyCache;
+
+/**
+ * @author Niels Grewe
+ * Test cases for the bookkeeping in the ontology cache.
+ */
+public class OntologyCacheTestCase extends AbstractTestCase {
+
+	private File directory;
+	private OntologyCache cache;
+
+	@Override
+	@Before public void setUp() throws OWLOntologyCreationException
+	{
+		super.setUp();
+		try
+		{
+			directory = File.createTempFile("cache", "");
+			directory.delete();
+			directory.mkdirs();
+		}
+		catch (IOException e)
+		{
+			fail(e.toString());
+		}
+		Set<IRI> noIRIs = Collections.emptySet();
+		cache = new OntologyCache(null, noIRIs, 2);
+	}
+
+	@Override
+	@After public void tearDown()
+	{
+		cache.teardown();
+		for (File f : directory.listFiles())
+		{
+			f.delete();
+		}
+		directory.delete();
+	}
+
+	/**
+	 * Writes an ontology with a declaration for each of the named classes.
+	 */
+	private URI writeOntology(String name, String... classes) throws IOException
+	{
+		File f = new File(directory, name + ".owl");
+		FileWriter writer = new FileWriter(f);
+		writer.write("Ontology(<" + baseIRI + "/" + name + ">\n");
+		for (String c : classes)
+		{
+			writer.write("Declaration(Class(<" + IRI(c) + ">))\n");
+		}
+		writer.write(")\n");
+		writer.close();
+		return f.toURI();
+	}
+
+	@Test public void testHitsAndMisses() throws Throwable
+	{
+		URI a = writeOntology("a", "A");
+		OWLOntology first = cache.getOntologyAtURI(a).get();
+		OWLOntology second = cache.getOntologyAtURI(a).get();
+		assertSame(first, second);
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(0, cache.getEvictionCount());
+	}
+
+	@Test public void testEviction() throws Throwable
+	{
+		URI a = writeOntology("a", "A", "B");
+		URI b = writeOntology("b", "C", "D");
+		OWLOntology ontA = cache.getOntologyAtURI(a).get();
+		// Room for one of the two ontologies:
+		cache.setMaximumWeight(ontA.getAxiomCount());
+		cache.getOntologyAtURI(b).get();
+		assertEquals(1, cache.getEvictionCount());
+		assertTrue(cache.getWeight() <= cache.getMaximumWeight());
+
+		// a was evicted, so we need to load it again.
+		OWLOntology reloaded = cache.getOntologyAtURI(a).get();
+		assertNotSame(ontA, reloaded);
+		assertEquals(ontA.getClassesInSignature(), reloaded.getClassesInSignature());
+		assertEquals(3, cache.getMissCount());
+	}
+}
@@ -0,0 +1,107 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 07.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.junit.*;
+
+import de.uni_rostock.goodod.evaluator.PairScheduler;
+
+/**
+ * @author Niels Grewe
+ * Test cases for the order in which comparisons are scheduled.
+ */
+public class PairSchedulerTestCase extends TestCase {
+
+	private List<URI> ontologies;
+
+	@Override
+	@Before public void setUp()
+	{
+		ontologies = new ArrayList<URI>();
+		for (int i = 0; i < 7; i++)
+		{
+			ontologies.add(URI.create("file:/tmp/ontology" + i + ".owl"));
+		}
+	}
+
+	@Test public void testAllPairsScheduledOnce()
+	{
+		PairScheduler scheduler = new PairScheduler(ontologies, ontologies, 4);
+		Set<List<URI>> seen = new HashSet<List<URI>>();
+		for (URI[] pair : scheduler.getPairs())
+		{
+			assertFalse(pair[0].equals(pair[1]));
+			List<URI> key = new ArrayList<URI>(2);
+			key.add(pair[0]);
+			key.add(pair[1]);
+			assertTrue(seen.add(key));
+		}
+		assertEquals(7 * 6, seen.size());
+	}
+
+	@Test public void testOntologiesReleasedAfterLastUse()
+	{
+		PairScheduler scheduler = new PairScheduler(ontologies, ontologies, 2);
+		Set<URI> released = new HashSet<URI>();
+		for (URI[] pair : scheduler.getPairs())
+		{
+			assertFalse(released.contains(pair[0]));
+			assertFalse(released.contains(pair[1]));
+			for (URI u : scheduler.pairDone(pair[0], pair[1]))
+			{
+				assertTrue(released.add(u));
+			}
+		}
+		assertEquals(new HashSet<URI>(ontologies), released);
+	}
+
+	@Test public void testSymmetricPairsScheduledOnce()
+	{
+		List<URI> columns = new ArrayList<URI>(ontologies);
+		URI model = URI.create("file:/tmp/model.owl");
+		columns.add(model);
+		PairScheduler scheduler = new PairScheduler(ontologies, columns, 4, true);
+		Set<Set<URI>> seen = new HashSet<Set<URI>>();
+		int modelPairs = 0;
+		for (URI[] pair : scheduler.getPairs())
+		{
+			if (pair[1].equals(model))
+			{
+				assertFalse(scheduler.isSymmetric(pair[0], pair[1]));
+				modelPairs++;
+				continue;
+			}
+			assertTrue(scheduler.isSymmetric(pair[0], pair[1]));
+			assertTrue(pair[0].compareTo(pair[1]) < 0);
+			Set<URI> key = new HashSet<URI>();
+			key.add(pair[0]);
+			key.add(pair[1]);
+			assertTrue(seen.add(key));
+		}
+		assertEquals((7 * 6) / 2, seen.size());
+		assertEquals(7, modelPairs);
+	}
+}
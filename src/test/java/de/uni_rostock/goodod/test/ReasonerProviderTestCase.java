@@ -0,0 +1,136 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 28.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.*;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.reasoner.InferenceType;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.ReasonerInterruptedException;
+import org.semanticweb.owlapi.reasoner.TimeOutException;
+
+import de.uni_rostock.goodod.owl.ReasonerProvider;
+
+/**
+ * @author Niels Grewe
+ * Test cases for the reasoner provider.
+ */
+public class ReasonerProviderTestCase extends AbstractNormalizerTestCase {
+
+	/**
+	 * Creates a reasoner that classifies until the reasoner is interrupted.
+	 */
+	private OWLReasoner createStuckReasoner()
+	{
+		final CountDownLatch interrupted = new CountDownLatch(1);
+		return (OWLReasoner)Proxy.newProxyInstance(getClass().getClassLoader(),
+		  new Class<?>[] { OWLReasoner.class },
+		  new InvocationHandler()
+		{
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+			{
+				if (method.getName().equals("interrupt"))
+				{
+					interrupted.countDown();
+				}
+				else if (method.getName().equals("precomputeInferences"))
+				{
+					// Like HermiT, ignore interrupts of the thread.
+					while (0 < interrupted.getCount())
+					{
+						LockSupport.parkNanos(1000000);
+					}
+					throw new ReasonerInterruptedException();
+				}
+				return null;
+			}
+		});
+	}
+
+	@Test public void testStructuralReasoner()
+	{
+		OWLClass A = addClass("A");
+		OWLClass B = addClass("B");
+		addSubClassOf(B, A);
+		ReasonerProvider provider = ReasonerProvider.forName("Structural", 0);
+		OWLReasoner reasoner = provider.createReasoner(ontology);
+		provider.precomputeInferences(reasoner, InferenceType.CLASS_HIERARCHY);
+		assertTrue(reasoner.getSuperClasses(B, true).containsEntity(A));
+		reasoner.dispose();
+	}
+
+	@Test public void testUnknownReasoner()
+	{
+		try
+		{
+			ReasonerProvider.forName("org.example.NoSuchReasonerFactory", 0);
+			fail("Unknown reasoner accepted.");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// Expected
+		}
+	}
+
+	@Test public void testTimeout()
+	{
+		ReasonerProvider provider = ReasonerProvider.forName("HermiT", 100);
+		try
+		{
+			provider.precomputeInferences(createStuckReasoner(), InferenceType.CLASS_HIERARCHY);
+			fail("Classification not interrupted.");
+		}
+		catch (TimeOutException e)
+		{
+			assertEquals(1, provider.getTimeoutCount());
+		}
+	}
+
+	@Test public void testCancellation() throws InterruptedException
+	{
+		final ReasonerProvider provider = ReasonerProvider.forName("HermiT", 0);
+		final Throwable[] thrown = new Throwable[1];
+		Thread thread = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					provider.precomputeInferences(createStuckReasoner(), InferenceType.CLASS_HIERARCHY);
+				}
+				catch (Throwable e)
+				{
+					thrown[0] = e;
+				}
+			}
+		};
+		thread.start();
+		thread.interrupt();
+		thread.join(5000);
+		assertTrue(thrown[0] instanceof ReasonerInterruptedException);
+		assertEquals(0, provider.getTimeoutCount());
+		assertEquals(1, provider.getCancellationCount());
+	}
+}
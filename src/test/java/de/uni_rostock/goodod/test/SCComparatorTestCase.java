@@ -0,0 +1,287 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 15.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.*;
+import org.semanticweb.owlapi.model.*;
+
+import de.uni_rostock.goodod.owl.OntologyCache;
+import de.uni_rostock.goodod.owl.OntologyPair;
+import de.uni_rostock.goodod.owl.comparison.ApproximateSCComparator;
+import de.uni_rostock.goodod.owl.comparison.CSCComparator;
+import de.uni_rostock.goodod.owl.comparison.ComparatorDelegate;
+import de.uni_rostock.goodod.owl.comparison.DefaultComparatorDelegate;
+import de.uni_rostock.goodod.owl.comparison.FMeasureComparisonResult;
+import de.uni_rostock.goodod.owl.comparison.SCComparator;
+
+/**
+ * @author Niels Grewe
+ * Test cases for the semantic cotopy comparators.
+ */
+public class SCComparatorTestCase extends AbstractTestCase {
+
+	private File directory;
+	private OntologyCache cache;
+	private URI a;
+	private URI b;
+
+	@Override
+	@Before public void setUp() throws OWLOntologyCreationException
+	{
+		super.setUp();
+		try
+		{
+			directory = File.createTempFile("comparator", "");
+			directory.delete();
+			directory.mkdirs();
+			a = writeOntology("a", "B A", "C A", "D C", "E D");
+			b = writeOntology("b", "B A", "D A", "C D", "F C", "G F");
+		}
+		catch (IOException e)
+		{
+			fail(e.toString());
+		}
+		Set<IRI> noIRIs = Collections.emptySet();
+		cache = new OntologyCache(null, noIRIs, 2);
+	}
+
+	@Override
+	@After public void tearDown()
+	{
+		cache.teardown();
+		for (File f : directory.listFiles())
+		{
+			f.delete();
+		}
+		directory.delete();
+	}
+
+	/**
+	 * Writes an ontology with a SubClassOf axiom for each "sub super" string.
+	 */
+	private URI writeOntology(String name, String... subsumptions) throws IOException
+	{
+		File f = new File(directory, name + ".owl");
+		FileWriter writer = new FileWriter(f);
+		writer.write("Ontology(<" + baseIRI + "/" + name + ">\n");
+		for (String s : subsumptions)
+		{
+			String[] classes = s.split(" ");
+			writer.write("SubClassOf(<" + IRI(classes[0]) + "> <" + IRI(classes[1]) + ">)\n");
+		}
+		writer.write(")\n");
+		writer.close();
+		return f.toURI();
+	}
+
+	private void assertSameResult(FMeasureComparisonResult expected, FMeasureComparisonResult actual)
+	{
+		assertEquals(expected.getPrecision(), actual.getPrecision(), 0);
+		assertEquals(expected.getRecall(), actual.getRecall(), 0);
+	}
+
+	@Test public void testBothWaysAgreesWithSeparateComparisons() throws Throwable
+	{
+		SCComparator forward = new SCComparator(new OntologyPair(cache, a, b), true);
+		SCComparator backward = new SCComparator(new OntologyPair(cache, b, a), true);
+		FMeasureComparisonResult[] results = new SCComparator(new OntologyPair(cache, a, b), true).compareBothWays();
+		assertSameResult(forward.compare(), results[0]);
+		assertSameResult(backward.compare(), results[1]);
+	}
+
+	@Test public void testCommonBothWaysAgreesWithSeparateComparisons() throws Throwable
+	{
+		SCComparator forward = new CSCComparator(new OntologyPair(cache, a, b), true);
+		SCComparator backward = new CSCComparator(new OntologyPair(cache, b, a), true);
+		FMeasureComparisonResult[] results = new CSCComparator(new OntologyPair(cache, a, b), true).compareBothWays();
+		assertSameResult(forward.compare(), results[0]);
+		assertSameResult(backward.compare(), results[1]);
+	}
+
+	/**
+	 * Writes an ontology with a balanced tree of classes. Classes that are
+	 * divisible by skip are left out.
+	 */
+	private URI writeTree(String name, int size, int skip) throws IOException
+	{
+		List<String> subsumptions = new ArrayList<String>();
+		for (int i = 1; i < size; i++)
+		{
+			if ((0 != (i % skip)) && (0 != (((i - 1) / 2) % skip)))
+			{
+				subsumptions.add("C" + i + " C" + ((i - 1) / 2));
+			}
+		}
+		return writeOntology(name, subsumptions.toArray(new String[subsumptions.size()]));
+	}
+
+	@Test public void testParallelComparisonAgreesWithSequential() throws Throwable
+	{
+		URI large = writeTree("large", 1000, 7);
+		URI other = writeTree("other", 1000, 5);
+		try
+		{
+			SCComparator.setWorkerCount(1);
+			FMeasureComparisonResult sequential = new CSCComparator(new OntologyPair(cache, large, other), true).compare();
+			SCComparator.setWorkerCount(4);
+			FMeasureComparisonResult parallel = new CSCComparator(new OntologyPair(cache, large, other), true).compare();
+			FMeasureComparisonResult again = new CSCComparator(new OntologyPair(cache, large, other), true).compare();
+			assertEquals(sequential.getPrecision(), parallel.getPrecision(), 1e-12);
+			assertEquals(sequential.getRecall(), parallel.getRecall(), 1e-12);
+			// The reduction doesn't depend on the scheduling of the chunks.
+			assertSameResult(parallel, again);
+		}
+		finally
+		{
+			SCComparator.setWorkerCount(Runtime.getRuntime().availableProcessors());
+		}
+	}
+
+	/**
+	 * Only finds classes that are present in both ontologies, so that some
+	 * classes are missing from each side.
+	 */
+	private static class IntersectingDelegate extends DefaultComparatorDelegate
+	{
+		IntersectingDelegate()
+		{
+			super(true);
+		}
+
+		@Override
+		public OWLClass findClass(OWLClass referenceClass, OWLOntology referenceOntology, OWLOntology searchOntology)
+		{
+			IRI theIRI = referenceClass.getIRI();
+			if (referenceOntology.containsClassInSignature(theIRI, true) && searchOntology.containsClassInSignature(theIRI, true))
+			{
+				return referenceClass;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Estimates the precision for missing classes by trying every candidate.
+	 */
+	private static class ExhaustiveCSCComparator extends CSCComparator
+	{
+		ExhaustiveCSCComparator(OntologyPair thePair)
+		{
+			super(thePair, true);
+		}
+
+		@Override
+		protected double getTaxonomicPrecision(OWLClass classA, OWLClass classB, OWLOntology ontologyA, OWLOntology ontologyB)
+		{
+			if ((null != classA) && (null != classB))
+			{
+				return computeTaxonomicPrecision(classA, classB, ontologyA, ontologyB);
+			}
+			double maxPrecision = 0;
+			if (null == classA)
+			{
+				for (OWLClass c : ontologyA.getClassesInSignature())
+				{
+					if (null == delegate.findClass(c, ontologyB, ontologyA))
+					{
+						maxPrecision = Math.max(maxPrecision, computeTaxonomicPrecision(c, classB, ontologyA, ontologyB));
+					}
+				}
+			}
+			else
+			{
+				for (OWLClass c : ontologyB.getClassesInSignature())
+				{
+					if (null == delegate.findClass(c, ontologyA, ontologyB))
+					{
+						maxPrecision = Math.max(maxPrecision, computeTaxonomicPrecision(classA, c, ontologyA, ontologyB));
+					}
+				}
+			}
+			return maxPrecision;
+		}
+	}
+
+	@Test public void testPrunedSearchAgreesWithExhaustiveSearch() throws Throwable
+	{
+		URI first = writeTree("first", 200, 7);
+		URI second = writeTree("second", 200, 5);
+		CSCComparator pruned = new CSCComparator(new OntologyPair(cache, first, second), true);
+		pruned.setDelegate(new IntersectingDelegate());
+		CSCComparator exhaustive = new ExhaustiveCSCComparator(new OntologyPair(cache, first, second));
+		exhaustive.setDelegate(new IntersectingDelegate());
+		assertSameResult(exhaustive.compare(), pruned.compare());
+		assertTrue(0 < pruned.getPrunedCandidateCount());
+		assertTrue(pruned.getPrunedCandidateCount() <= pruned.getCandidateCount());
+	}
+
+	/**
+	 * Hides the equivalence keys of the default delegate, so that the
+	 * comparator has to match classes pairwise.
+	 */
+	private static class UnkeyedDelegate implements ComparatorDelegate
+	{
+		private final DefaultComparatorDelegate delegate = new DefaultComparatorDelegate(true);
+
+		public OWLClass findClass(OWLClass referenceClass, OWLOntology referenceOntology, OWLOntology searchOntology)
+		{
+			return delegate.findClass(referenceClass, referenceOntology, searchOntology);
+		}
+
+		public double getClassWeight(OWLClass targetClass, OWLOntology referenceOntology, OWLOntology searchOntology)
+		{
+			return delegate.getClassWeight(targetClass, referenceOntology, searchOntology);
+		}
+
+		public boolean classesConsideredEqual(OWLClass classA, OWLOntology ontologyA, OWLClass classB, OWLOntology ontologyB)
+		{
+			return delegate.classesConsideredEqual(classA, ontologyA, classB, ontologyB);
+		}
+	}
+
+	@Test public void testKeyTablesAgreeWithPairwiseMatching() throws Throwable
+	{
+		URI first = writeTree("first", 300, 7);
+		URI second = writeTree("second", 300, 5);
+		SCComparator keyed = new SCComparator(new OntologyPair(cache, first, second), true);
+		SCComparator pairwise = new SCComparator(new OntologyPair(cache, first, second), true);
+		pairwise.setDelegate(new UnkeyedDelegate());
+		assertSameResult(pairwise.compare(), keyed.compare());
+	}
+
+	@Test public void testApproximationIsClose() throws Throwable
+	{
+		URI first = writeTree("first", 300, 7);
+		URI second = writeTree("second", 300, 5);
+		FMeasureComparisonResult exact = new SCComparator(new OntologyPair(cache, first, second), true).compare();
+		FMeasureComparisonResult approximate = new ApproximateSCComparator(new OntologyPair(cache, first, second), true, 256).compare();
+		assertEquals(exact.getPrecision(), approximate.getPrecision(), 0.05);
+		assertEquals(exact.getRecall(), approximate.getRecall(), 0.05);
+		// Sketches don't depend on chance.
+		assertSameResult(approximate, new ApproximateSCComparator(new OntologyPair(cache, first, second), true, 256).compare());
+	}
+}
@@ -0,0 +1,125 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 12.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.*;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import de.uni_rostock.goodod.owl.SharedImportLayer;
+
+/**
+ * @author Niels Grewe
+ * Test cases for sharing imported ontologies between managers.
+ */
+public class SharedImportLayerTestCase extends AbstractTestCase {
+
+	private File directory;
+	private SharedImportLayer layer;
+	private OWLOntology shared;
+	private final IRI importIRI = IRI.create(baseIRI + "/import");
+
+	@Override
+	@Before public void setUp() throws OWLOntologyCreationException
+	{
+		super.setUp();
+		try
+		{
+			directory = File.createTempFile("shared", "");
+			directory.delete();
+			directory.mkdirs();
+			writeOntology("import", importIRI,
+			  "SubClassOf(<" + IRI("A") + "> <" + IRI("B") + ">)\n"
+			  + "SubClassOf(<" + IRI("B") + "> <" + IRI("C") + ">)\n");
+		}
+		catch (IOException e)
+		{
+			fail(e.toString());
+		}
+		layer = new SharedImportLayer(new OWLOntologyLoaderConfiguration());
+		shared = layer.preload(importIRI, IRI.create(new File(directory, "import.owl")));
+	}
+
+	@Override
+	@After public void tearDown()
+	{
+		for (File f : directory.listFiles())
+		{
+			f.delete();
+		}
+		directory.delete();
+	}
+
+	private File writeOntology(String name, IRI ontologyIRI, String axioms) throws IOException
+	{
+		File f = new File(directory, name + ".owl");
+		FileWriter writer = new FileWriter(f);
+		writer.write("Ontology(<" + ontologyIRI + ">\n" + axioms + ")\n");
+		writer.close();
+		return f;
+	}
+
+	private OWLOntology loadStudentOntology(String name) throws IOException, OWLOntologyCreationException
+	{
+		File f = writeOntology(name, IRI.create(baseIRI + "/" + name),
+		  "Import(<" + importIRI + ">)\nSubClassOf(<" + IRI(name) + "> <" + IRI("A") + ">)\n");
+		OWLOntologyManager m = OWLManager.createOWLOntologyManager();
+		layer.attachTo(m);
+		return m.loadOntologyFromOntologyDocument(f);
+	}
+
+	@Test public void testImportIsShared() throws Throwable
+	{
+		OWLOntology first = loadStudentOntology("first");
+		OWLOntology second = loadStudentOntology("second");
+		assertNotSame(first.getOWLOntologyManager(), second.getOWLOntologyManager());
+		assertTrue(first.getImportsClosure().contains(shared));
+		assertTrue(second.getImportsClosure().contains(shared));
+		for (OWLOntology o : first.getImportsClosure())
+		{
+			if (o != first)
+			{
+				assertSame(shared, o);
+			}
+		}
+	}
+
+	@Test public void testSharedOntologyIsReadOnly() throws Throwable
+	{
+		OWLOntology student = loadStudentOntology("student");
+		int axiomCount = shared.getAxiomCount();
+		OWLAxiom ax = factory.getOWLSubClassOfAxiom(factory.getOWLClass(IRI("C")), factory.getOWLClass(IRI("D")));
+		student.getOWLOntologyManager().addAxiom(shared, ax);
+		assertEquals(axiomCount, shared.getAxiomCount());
+	}
+
+	@Test public void testImportedTaxonomy() throws Throwable
+	{
+		OWLOntology student = loadStudentOntology("student");
+		Map<OWLClass,Set<OWLClass>> taxonomy = layer.getImportedTaxonomy(student);
+		Set<OWLClass> supers = taxonomy.get(factory.getOWLClass(IRI("A")));
+		assertTrue(supers.contains(factory.getOWLClass(IRI("C"))));
+		assertFalse(taxonomy.containsKey(factory.getOWLClass(IRI("student"))));
+	}
+}
@@ -52,6 +52,22 @@ public class SubsumptionMaterializationNormalizerTestCase extends
 		assertTrue(ontology.containsAxiom(CSubB));
 	}
 	
+	@Test public void testUnsatisfiableClassBelowEverything() throws OWLOntologyCreationException
+	{
+		OWLClass A = addClass("A");
+		OWLClass B = addClass("B");
+		OWLClass C = addClass("C");
+		OWLClass D = addClass("D");
+		addSubClassOf(C, A);
+		addSubClassOf(C, factory.getOWLObjectComplementOf(A));
+		addSubClassOf(D, B);
+		normalizer.normalize(ontology);
+		// C is also below B, but that follows from D being below B.
+		assertTrue(ontology.containsAxiom(factory.getOWLSubClassOfAxiom(C, D)));
+		assertFalse(ontology.containsAxiom(factory.getOWLSubClassOfAxiom(D, C)));
+		assertFalse(ontology.containsAxiom(factory.getOWLSubClassOfAxiom(A, B)));
+	}
+	
 	@Test public void testCleanHierarchy() throws OWLOntologyCreationException
 	{
 		OWLClass A = addClass("A");
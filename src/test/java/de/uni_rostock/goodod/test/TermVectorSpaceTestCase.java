@@ -0,0 +1,82 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 25.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.test;
+
+import org.junit.*;
+import org.semanticweb.owlapi.model.*;
+
+import de.uni_rostock.goodod.owl.TermVector;
+import de.uni_rostock.goodod.owl.TermVectorSpace;
+
+/**
+ * @author Niels Grewe
+ *
+ */
+public class TermVectorSpaceTestCase extends AbstractTestCase {
+
+	private TermVectorSpace space;
+
+	@Override
+	@Before public void setUp() throws OWLOntologyCreationException
+	{
+		super.setUp();
+		space = new TermVectorSpace(false);
+	}
+
+	/**
+	 * Creates an ontology declaring the named classes.
+	 */
+	private OWLOntology createOntology(String name, String... classes) throws OWLOntologyCreationException
+	{
+		OWLOntology o = manager.createOntology(IRI.create(baseIRI + "/" + name));
+		for (String c : classes)
+		{
+			manager.addAxiom(o, factory.getOWLDeclarationAxiom(factory.getOWLClass(IRI(c))));
+		}
+		return o;
+	}
+
+	@Test public void testCosine() throws Throwable
+	{
+		TermVector a = space.getTermVector(createOntology("a", "BloodCell", "Organ"));
+		TermVector b = space.getTermVector(createOntology("b", "Blood_Cells", "organ"));
+		TermVector c = space.getTermVector(createOntology("c", "Tissue"));
+		assertEquals(1.0, a.cosine(b), 1e-9);
+		assertEquals(0.0, a.cosine(c), 0);
+		assertEquals(4, space.getTermCount());
+	}
+
+	@Test public void testDocumentsAddedOnce() throws Throwable
+	{
+		OWLOntology o = createOntology("a", "Organ");
+		TermVector first = space.getTermVector(o);
+		assertSame(first, space.getTermVector(o));
+		assertEquals(1, space.getDocumentCount());
+		assertEquals(0.0, space.getInverseDocumentFrequencies()[first.getTerm(0)], 0);
+	}
+
+	@Test public void testInverseDocumentFrequencies() throws Throwable
+	{
+		TermVector a = space.getTermVector(createOntology("a", "Organ", "Cell"));
+		TermVector b = space.getTermVector(createOntology("b", "Organ", "Tissue"));
+		space.getTermVector(createOntology("c", "Organ", "Cell"));
+		// Organ occurs everywhere and doesn't count, the rest doesn't overlap.
+		assertEquals(0.5, a.cosine(b), 1e-9);
+		assertEquals(0.0, a.cosine(b, space.getInverseDocumentFrequencies()), 1e-9);
+	}
+}
@@ -0,0 +1,63 @@
+/**
+  Copyright (C) 2012 The University of Rostock.
+
+  Written by:  Niels Grewe
+  Created: 10.09.2012
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either
+  version 3 of the License, or (at your option) any later version.
+
+  You should have received a copy of the GNU General Public
+  License along with this program; see the file COPYING.
+  If not, write to the Free Software Foundation,
+  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+
+ */
+package de.uni_rostock.goodod.test;
+
+import junit.framework.TestCase;
+
+import org.junit.*;
+
+import de.uni_rostock.goodod.tools.Throttle;
+
+/**
+ * @author Niels Grewe
+ * Test cases for the admission control throttle.
+ */
+public class ThrottleTestCase extends TestCase {
+
+	@Test public void testBlocksUntilReleased() throws InterruptedException
+	{
+		final Throttle throttle = new Throttle("test", 1);
+		throttle.acquire();
+		Thread waiter = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					throttle.acquire();
+					throttle.release();
+				}
+				catch (InterruptedException e)
+				{
+					// Ignored, the assertions below will fail.
+				}
+			}
+		});
+		waiter.start();
+		while (0 == throttle.getQueueDepth())
+		{
+			Thread.sleep(1);
+		}
+		assertTrue(waiter.isAlive());
+		throttle.release();
+		waiter.join();
+		assertEquals(0, throttle.getQueueDepth());
+		assertEquals(1, throttle.getMaximumQueueDepth());
+		assertEquals(2, throttle.getAcquisitionCount());
+	}
+}